@@ -0,0 +1,172 @@
+/*
+ * Testerra
+ *
+ * (C) 2020, Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.execution.testng;
+
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.testng.ITestNGMethod;
+
+/**
+ * Wall time of test methods of previous runs, stored as tab separated "class#method" and milliseconds.
+ * Durations of data provider invocations and retries of a method are summed up.
+ * A new run updates the stored value with the average of the previous and the new duration,
+ * methods which have not been executed keep their value, so that several shards can share one file.
+ */
+public class DurationHistory implements Loggable {
+
+    /**
+     * Path of the history file, the history is disabled when not set
+     */
+    public static final String FILE = "tt.execution.duration.history.file";
+
+    private static DurationHistory instance;
+
+    private final Path file;
+    private final Map<String, Long> durations;
+    private final long defaultDuration;
+    private final Map<String, LongAdder> recordedDurations = new ConcurrentHashMap<>();
+
+    /**
+     * @return The history of {@link #FILE}, NULL if not configured
+     */
+    public static synchronized DurationHistory get() {
+        if (instance == null) {
+            String file = PropertyManager.getProperty(FILE, "");
+            if (file.trim().isEmpty()) {
+                return null;
+            }
+            instance = new DurationHistory(Paths.get(file.trim()));
+        }
+        return instance;
+    }
+
+    public DurationHistory(Path file) {
+        this.file = file;
+        this.durations = read(file);
+        long[] values = durations.values().stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(values);
+        this.defaultDuration = values.length > 0 ? values[values.length / 2] : 0;
+    }
+
+    public static String getKey(ITestNGMethod method) {
+        return method.getRealClass().getName() + "#" + method.getMethodName();
+    }
+
+    private Map<String, Long> read(Path file) {
+        Map<String, Long> durations = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf('\t');
+                if (separator > 0) {
+                    try {
+                        durations.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1).trim()));
+                    } catch (NumberFormatException e) {
+                        log().debug("Ignoring invalid duration history line: " + line);
+                    }
+                }
+            }
+            log().info("Loaded " + durations.size() + " method durations from " + file);
+        } catch (NoSuchFileException e) {
+            log().info("No duration history at " + file + " yet");
+        } catch (IOException e) {
+            log().warn("Cannot read duration history " + file, e);
+        }
+        return durations;
+    }
+
+    /**
+     * @return Duration of the previous runs in milliseconds, -1 if unknown
+     */
+    public long getDuration(String key) {
+        return durations.getOrDefault(key, -1L);
+    }
+
+    /**
+     * @return Duration of the previous runs in milliseconds, the median of all known durations if unknown
+     */
+    public long getEstimatedDuration(String key) {
+        return durations.getOrDefault(key, defaultDuration);
+    }
+
+    public long getEstimatedDuration(ITestNGMethod method) {
+        return getEstimatedDuration(getKey(method));
+    }
+
+    /**
+     * Adds the duration of an invocation in the current run
+     */
+    public void record(String key, long durationMillis) {
+        if (durationMillis >= 0) {
+            recordedDurations.computeIfAbsent(key, k -> new LongAdder()).add(durationMillis);
+        }
+    }
+
+    /**
+     * Writes the durations of the current run into the history file
+     */
+    public synchronized void save() {
+        if (recordedDurations.isEmpty()) {
+            return;
+        }
+        // Other shards may have updated the file meanwhile
+        Map<String, Long> merged = read(file);
+        recordedDurations.forEach((key, duration) -> {
+            long recorded = duration.sum();
+            Long previous = merged.get(key);
+            merged.put(key, previous != null ? (previous + recorded) / 2 : recorded);
+        });
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tempFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Long> entry : merged.entrySet()) {
+                        writer.write(entry.getKey() + "\t" + entry.getValue());
+                        writer.newLine();
+                    }
+                }
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            log().info("Saved " + recordedDurations.size() + " method durations to " + file);
+        } catch (IOException e) {
+            log().warn("Cannot write duration history " + file, e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Testerra
+ *
+ * (C) 2020, Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.execution.testng.worker.start;
+
+import com.google.common.eventbus.Subscribe;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import eu.tsystems.mms.tic.testframework.events.InterceptMethodsEvent;
+import eu.tsystems.mms.tic.testframework.execution.testng.DurationHistory;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.report.TesterraListener;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import org.testng.IMethodInstance;
+import org.testng.ITestNGMethod;
+
+/**
+ * Keeps only the methods of this shard, when the test methods are distributed over {@link #SHARD_COUNT} nodes.
+ * Methods connected by dependsOnMethods or dependsOnGroups, and all instances of a method, are always assigned to the same shard.
+ * With the hash strategy, the shard is calculated from the method names. With the duration strategy,
+ * the methods are distributed by their durations in the {@link DurationHistory}, which requires the same history file on all nodes.
+ * The kept methods are written to the {@link #MANIFEST_FILE_NAME} in the report directory.
+ */
+public class ShardMethodInterceptor implements InterceptMethodsEvent.Listener, Loggable {
+
+    /**
+     * Index of this shard, starting with 0
+     */
+    public static final String SHARD_INDEX = "tt.shard.index";
+
+    /**
+     * Number of shards, sharding is disabled for 1 or less
+     */
+    public static final String SHARD_COUNT = "tt.shard.count";
+
+    /**
+     * "hash" (default) or "duration"
+     */
+    public static final String SHARD_STRATEGY = "tt.shard.strategy";
+
+    public static final String MANIFEST_FILE_NAME = "shard-manifest.properties";
+
+    private final int shardIndex = PropertyManager.getIntProperty(SHARD_INDEX, 0);
+    private final int shardCount = PropertyManager.getIntProperty(SHARD_COUNT, 1);
+    private final String strategy = PropertyManager.getProperty(SHARD_STRATEGY, "hash").trim().toLowerCase();
+    /**
+     * Kept methods per test context
+     */
+    private final Map<String, List<String>> manifest = new TreeMap<>();
+
+    @Subscribe
+    public void onInterceptMethods(InterceptMethodsEvent event) {
+        if (shardCount <= 1) {
+            return;
+        }
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            log().error("Invalid " + SHARD_INDEX + " " + shardIndex + " for " + shardCount + " shards, running all methods");
+            return;
+        }
+        List<IMethodInstance> methodInstances = event.getMethodInstances();
+        int[] shards = assignShards(methodInstances);
+        List<IMethodInstance> kept = new ArrayList<>();
+        for (int i = 0; i < methodInstances.size(); i++) {
+            if (shards[i] == shardIndex) {
+                kept.add(methodInstances.get(i));
+            }
+        }
+        log().info(String.format("Shard %d of %d keeps %d of %d methods of test context \"%s\"",
+                shardIndex, shardCount, kept.size(), methodInstances.size(), event.getTestContext().getName()));
+        event.setMethodInstances(kept);
+        writeManifest(event.getTestContext().getName(), kept);
+    }
+
+    /**
+     * @return The shard of every method instance
+     */
+    private int[] assignShards(List<IMethodInstance> methodInstances) {
+        int size = methodInstances.size();
+        int[] parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+
+        Map<String, List<Integer>> indexesByName = new HashMap<>();
+        Map<String, List<Integer>> indexesByGroup = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ITestNGMethod method = methodInstances.get(i).getMethod();
+            indexesByName.computeIfAbsent(getQualifiedName(method), name -> new ArrayList<>()).add(i);
+            for (String group : method.getGroups()) {
+                indexesByGroup.computeIfAbsent(group, name -> new ArrayList<>()).add(i);
+            }
+        }
+        // All instances of a method belong together
+        indexesByName.values().forEach(indexes -> indexes.forEach(index -> union(parents, indexes.get(0), index)));
+        for (int i = 0; i < size; i++) {
+            ITestNGMethod method = methodInstances.get(i).getMethod();
+            for (String dependency : method.getMethodsDependedUpon()) {
+                for (int index : findDependencies(indexesByName, dependency)) {
+                    union(parents, i, index);
+                }
+            }
+            for (String dependency : method.getGroupsDependedUpon()) {
+                for (int index : findDependencies(indexesByGroup, dependency)) {
+                    union(parents, i, index);
+                }
+            }
+        }
+
+        // Every unit is identified by its smallest method key, which is the same on all nodes
+        Map<Integer, TreeSet<String>> unitKeys = new HashMap<>();
+        Map<Integer, Long> unitDurations = new HashMap<>();
+        DurationHistory history = "duration".equals(strategy) ? DurationHistory.get() : null;
+        if ("duration".equals(strategy) && history == null) {
+            log().warn("No " + DurationHistory.FILE + " configured, sharding by hash");
+        }
+        for (int i = 0; i < size; i++) {
+            int root = find(parents, i);
+            ITestNGMethod method = methodInstances.get(i).getMethod();
+            unitKeys.computeIfAbsent(root, r -> new TreeSet<>()).add(DurationHistory.getKey(method));
+            if (history != null) {
+                unitDurations.merge(root, history.getEstimatedDuration(method), Long::sum);
+            }
+        }
+
+        Map<Integer, Integer> unitShards = new HashMap<>();
+        if (history != null) {
+            // Longest units first to the shard with the least duration
+            long[] shardDurations = new long[shardCount];
+            List<Integer> units = new ArrayList<>(unitKeys.keySet());
+            units.sort((a, b) -> {
+                int result = Long.compare(unitDurations.get(b), unitDurations.get(a));
+                return result != 0 ? result : unitKeys.get(a).first().compareTo(unitKeys.get(b).first());
+            });
+            for (int unit : units) {
+                int shard = 0;
+                for (int i = 1; i < shardCount; i++) {
+                    if (shardDurations[i] < shardDurations[shard]) {
+                        shard = i;
+                    }
+                }
+                shardDurations[shard] += unitDurations.get(unit);
+                unitShards.put(unit, shard);
+            }
+        } else {
+            unitKeys.forEach((unit, keys) -> unitShards.put(unit, hashShard(keys.first())));
+        }
+
+        int[] shards = new int[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = unitShards.get(find(parents, i));
+        }
+        return shards;
+    }
+
+    /**
+     * TestNG qualifies the methods depended upon with the declaring class, so inherited methods match as well
+     */
+    private static String getQualifiedName(ITestNGMethod method) {
+        return method.getConstructorOrMethod().getDeclaringClass().getName() + "." + method.getMethodName();
+    }
+
+    /**
+     * Dependencies are names or regular expressions
+     */
+    private static List<Integer> findDependencies(Map<String, List<Integer>> indexesByName, String dependency) {
+        List<Integer> indexes = indexesByName.get(dependency);
+        if (indexes != null) {
+            return indexes;
+        }
+        try {
+            Pattern pattern = Pattern.compile(dependency);
+            return indexesByName.entrySet().stream()
+                    .filter(entry -> pattern.matcher(entry.getKey()).matches())
+                    .flatMap(entry -> entry.getValue().stream())
+                    .collect(Collectors.toList());
+        } catch (PatternSyntaxException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private int hashShard(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private synchronized void writeManifest(String testContextName, List<IMethodInstance> kept) {
+        manifest.put(testContextName, kept.stream()
+                .map(methodInstance -> DurationHistory.getKey(methodInstance.getMethod()))
+                .distinct()
+                .collect(Collectors.toList()));
+
+        Properties properties = new Properties();
+        properties.setProperty(SHARD_INDEX, Integer.toString(shardIndex));
+        properties.setProperty(SHARD_COUNT, Integer.toString(shardCount));
+        properties.setProperty(SHARD_STRATEGY, strategy);
+        manifest.forEach((name, methods) -> properties.setProperty("methods." + name, String.join(",", methods)));
+
+        File file = new File(TesterraListener.getReport().getReportDirectory(), MANIFEST_FILE_NAME);
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.store(outputStream, "Methods of shard " + shardIndex + " of " + shardCount);
+        } catch (IOException e) {
+            log().warn("Cannot write shard manifest " + file, e);
+        }
+    }
+}
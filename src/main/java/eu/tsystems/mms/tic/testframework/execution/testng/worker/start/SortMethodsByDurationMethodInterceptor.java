@@ -0,0 +1,77 @@
+/*
+ * Testerra
+ *
+ * (C) 2020, Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.execution.testng.worker.start;
+
+import com.google.common.eventbus.Subscribe;
+import eu.tsystems.mms.tic.testframework.events.FinalizeExecutionEvent;
+import eu.tsystems.mms.tic.testframework.events.InterceptMethodsEvent;
+import eu.tsystems.mms.tic.testframework.events.MethodEndEvent;
+import eu.tsystems.mms.tic.testframework.execution.testng.DurationHistory;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import java.util.Comparator;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.annotations.Test;
+
+/**
+ * Sorts the methods of the same {@link Test#priority()} by their duration in previous runs, longest first,
+ * so that parallel workers finish at nearly the same time. Methods without history are estimated with the median duration.
+ * Records the durations of the current run and updates the {@link DurationHistory} at the end of the execution.
+ * Inactive when {@link DurationHistory#FILE} is not set.
+ */
+public class SortMethodsByDurationMethodInterceptor implements
+        InterceptMethodsEvent.Listener,
+        MethodEndEvent.Listener,
+        FinalizeExecutionEvent.Listener,
+        Loggable
+{
+    private final DurationHistory history = DurationHistory.get();
+
+    @Override
+    @Subscribe
+    public void onInterceptMethods(InterceptMethodsEvent event) {
+        if (history == null) {
+            return;
+        }
+        Comparator<ITestNGMethod> comparator = Comparator.comparingInt(ITestNGMethod::getPriority)
+                .thenComparing(Comparator.comparingLong((ITestNGMethod method) -> history.getEstimatedDuration(method)).reversed());
+        event.getMethodInstances().sort((a, b) -> comparator.compare(a.getMethod(), b.getMethod()));
+    }
+
+    @Override
+    @Subscribe
+    public void onMethodEnd(MethodEndEvent event) {
+        ITestResult testResult = event.getTestResult();
+        if (history == null || !testResult.getMethod().isTest()) {
+            return;
+        }
+        history.record(DurationHistory.getKey(testResult.getMethod()), testResult.getEndMillis() - testResult.getStartMillis());
+    }
+
+    @Override
+    @Subscribe
+    public void onFinalizeExecution(FinalizeExecutionEvent event) {
+        if (history != null) {
+            history.save();
+        }
+    }
+}
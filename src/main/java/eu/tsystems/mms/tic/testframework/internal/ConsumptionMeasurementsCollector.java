@@ -21,15 +21,26 @@
  */
  package eu.tsystems.mms.tic.testframework.internal;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ConsumptionMeasurementsCollector {
 
-    private final List<ContextMeasurement> contextMeasurements = new LinkedList<>();
-    private boolean squash = false;
+    /**
+     * Maximum number of points per measurement before older points get downsampled
+     */
+    public static final String TIME_SERIES_CAPACITY = "tt.monitor.timeseries.capacity";
+
+    private static final int DEFAULT_CAPACITY = PropertyManager.getIntProperty(TIME_SERIES_CAPACITY, 4096);
+
+    private final List<ContextMeasurement> contextMeasurements = new CopyOnWriteArrayList<>();
+    private final Set<ContextMeasurement> registeredMeasurements = ConcurrentHashMap.newKeySet();
+    private volatile boolean squash = false;
 
     public static class ContextMeasurement {
 
@@ -37,13 +48,18 @@ public class ConsumptionMeasurementsCollector {
         private final String yAxisTitle;
         private final String unit;
         private Long maxValue;
-        private Map<Long, Long> measurements = new LinkedHashMap<>();
-        private Map<Long, String> markers = new LinkedHashMap<>();
+        private final TimeSeries measurements;
+        private final Map<Long, String> markers = new ConcurrentSkipListMap<>();
 
         public ContextMeasurement(String name, String yAxisTitle, String unit) {
+            this(name, yAxisTitle, unit, DEFAULT_CAPACITY);
+        }
+
+        public ContextMeasurement(String name, String yAxisTitle, String unit, int capacity) {
             this.name = name;
             this.yAxisTitle = yAxisTitle;
             this.unit = unit;
+            this.measurements = new TimeSeries(capacity);
         }
 
         public String getName() {
@@ -65,6 +81,10 @@ public class ConsumptionMeasurementsCollector {
         public void setMaxValue(Long maxValue) {
             this.maxValue = maxValue;
         }
+
+        public TimeSeries getTimeSeries() {
+            return measurements;
+        }
     }
 
     public void addValue(ContextMeasurement contextMeasurement, long value) {
@@ -74,16 +94,16 @@ public class ConsumptionMeasurementsCollector {
     public void addValue(ContextMeasurement contextMeasurement, long value, long timestamp) {
         check(contextMeasurement);
 
-        boolean put = true;
+        TimeSeries timeSeries = contextMeasurement.measurements;
         if (squash) {
-            Object[] objects = contextMeasurement.measurements.values().toArray();
-            if (objects.length > 0 && (long) objects[objects.length - 1] == value) {
-                put = false;
+            // the check and the add need to be atomic for concurrent writers
+            synchronized (timeSeries) {
+                if (timeSeries.isEmpty() || timeSeries.getLastValue(value) != value) {
+                    timeSeries.add(timestamp, value);
+                }
             }
-        }
-
-        if (put) {
-            contextMeasurement.measurements.put(timestamp, value);
+        } else {
+            timeSeries.add(timestamp, value);
         }
     }
 
@@ -98,7 +118,7 @@ public class ConsumptionMeasurementsCollector {
     }
 
     private void check(ContextMeasurement contextMeasurement) {
-        if (!contextMeasurements.contains(contextMeasurement)) {
+        if (registeredMeasurements.add(contextMeasurement)) {
             contextMeasurements.add(contextMeasurement);
         }
     }
@@ -107,20 +127,31 @@ public class ConsumptionMeasurementsCollector {
         return contextMeasurements;
     }
 
+    /**
+     * @return A snapshot of the measurements
+     */
+    public TimeSeries.Snapshot getMeasurementsSnapshot(ContextMeasurement contextMeasurement) {
+        if (registeredMeasurements.contains(contextMeasurement)) {
+            return contextMeasurement.measurements.snapshot();
+        }
+        return null;
+    }
+
+    /**
+     * @return A snapshot of the measurements
+     * @deprecated Loses measurements taken in the same millisecond, use {@link #getMeasurementsSnapshot(ContextMeasurement)}
+     */
+    @Deprecated
     public Map<Long, Long> getMeasurements(ContextMeasurement contextMeasurement) {
-        for (ContextMeasurement measurement : contextMeasurements) {
-            if (measurement == contextMeasurement) {
-                return measurement.measurements;
-            }
+        if (registeredMeasurements.contains(contextMeasurement)) {
+            return contextMeasurement.measurements.toMap();
         }
         return null;
     }
 
     public Map<Long, String> getMarkers(ContextMeasurement contextMeasurement) {
-        for (ContextMeasurement measurement : contextMeasurements) {
-            if (measurement == contextMeasurement) {
-                return measurement.markers;
-            }
+        if (registeredMeasurements.contains(contextMeasurement)) {
+            return contextMeasurement.markers;
         }
         return null;
     }
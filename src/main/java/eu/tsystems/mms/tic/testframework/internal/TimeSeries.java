@@ -0,0 +1,207 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Fixed capacity time series of primitive timestamps and values.
+ * When the capacity is reached, the series is downsampled by keeping the minimum and maximum value of every
+ * four consecutive points, so memory stays constant while the series still covers the whole run.
+ * Older points are downsampled more often than recent ones.
+ *
+ * Writers are serialized, readers never block: points are immutable once published
+ * and downsampling publishes a new buffer instead of modifying the current one.
+ */
+public class TimeSeries {
+
+    private static final int BUCKET_SIZE = 4;
+
+    private static final class Buffer {
+        private final long[] timestamps;
+        private final long[] values;
+        private volatile int size;
+
+        private Buffer(int capacity) {
+            timestamps = new long[capacity];
+            values = new long[capacity];
+        }
+    }
+
+    /**
+     * Immutable copy of all points in chronological order, points with the same timestamp are kept
+     */
+    public static final class Snapshot {
+        private final long[] timestamps;
+        private final long[] values;
+
+        private Snapshot(long[] timestamps, long[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        public int size() {
+            return timestamps.length;
+        }
+
+        public long getTimestamp(int index) {
+            return timestamps[index];
+        }
+
+        public long getValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * @return A copy of the timestamps
+         */
+        public long[] getTimestamps() {
+            return timestamps.clone();
+        }
+
+        /**
+         * @return A copy of the values
+         */
+        public long[] getValues() {
+            return values.clone();
+        }
+    }
+
+    private final int capacity;
+    private volatile Buffer buffer;
+    private long downsamplings = 0;
+
+    /**
+     * @param capacity Maximum number of points, rounded up to a multiple of four
+     */
+    public TimeSeries(int capacity) {
+        this.capacity = Math.max(BUCKET_SIZE, (capacity + BUCKET_SIZE - 1) / BUCKET_SIZE * BUCKET_SIZE);
+        this.buffer = new Buffer(this.capacity);
+    }
+
+    public synchronized void add(long timestamp, long value) {
+        Buffer current = buffer;
+        int size = current.size;
+        if (size == capacity) {
+            current = downsample(current);
+            size = current.size;
+            buffer = current;
+        }
+        current.timestamps[size] = timestamp;
+        current.values[size] = value;
+        // publishes the point
+        current.size = size + 1;
+    }
+
+    /**
+     * Keeps the minimum and maximum of every bucket in their chronological order
+     */
+    private Buffer downsample(Buffer source) {
+        Buffer target = new Buffer(capacity);
+        int targetSize = 0;
+        for (int bucketStart = 0; bucketStart < source.size; bucketStart += BUCKET_SIZE) {
+            int bucketEnd = Math.min(bucketStart + BUCKET_SIZE, source.size);
+            int min = bucketStart;
+            int max = bucketStart;
+            for (int i = bucketStart + 1; i < bucketEnd; i++) {
+                if (source.values[i] < source.values[min]) {
+                    min = i;
+                }
+                if (source.values[i] > source.values[max]) {
+                    max = i;
+                }
+            }
+            if (min == max) {
+                max = bucketEnd - 1;
+            }
+            int first = Math.min(min, max);
+            int second = Math.max(min, max);
+            target.timestamps[targetSize] = source.timestamps[first];
+            target.values[targetSize++] = source.values[first];
+            if (second != first) {
+                target.timestamps[targetSize] = source.timestamps[second];
+                target.values[targetSize++] = source.values[second];
+            }
+        }
+        target.size = targetSize;
+        downsamplings++;
+        return target;
+    }
+
+    public int size() {
+        return buffer.size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return The last value or the default value if the series is empty
+     */
+    public long getLastValue(long defaultValue) {
+        Buffer current = buffer;
+        int size = current.size;
+        return size == 0 ? defaultValue : current.values[size - 1];
+    }
+
+    /**
+     * @return How many times the series has been downsampled
+     */
+    public synchronized long getDownsamplings() {
+        return downsamplings;
+    }
+
+    /**
+     * Passes all points in chronological order
+     */
+    public void forEach(BiConsumer<Long, Long> consumer) {
+        Buffer current = buffer;
+        int size = current.size;
+        for (int i = 0; i < size; i++) {
+            consumer.accept(current.timestamps[i], current.values[i]);
+        }
+    }
+
+    /**
+     * @return A copy of all points
+     */
+    public Snapshot snapshot() {
+        Buffer current = buffer;
+        int size = current.size;
+        return new Snapshot(Arrays.copyOf(current.timestamps, size), Arrays.copyOf(current.values, size));
+    }
+
+    /**
+     * @return A copy of the series, points with the same timestamp are collapsed to the last one
+     * @deprecated Loses points recorded in the same millisecond, use {@link #snapshot()}
+     */
+    @Deprecated
+    public Map<Long, Long> toMap() {
+        Map<Long, Long> map = new LinkedHashMap<>();
+        forEach(map::put);
+        return map;
+    }
+}
@@ -21,18 +21,88 @@
  */
  package eu.tsystems.mms.tic.testframework.internal.utils;
 
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
 import eu.tsystems.mms.tic.testframework.internal.TimingInfo;
-import eu.tsystems.mms.tic.testframework.utils.NumberUtils;
 import org.apache.commons.lang3.time.StopWatch;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects durations per context into {@link DurationHistogram}s while they are added.
+ * The {@link TimingInfo}s itself are kept completely, or in a bounded reservoir sample per context when {@link #RESERVOIR_SIZE} is set.
+ */
 public class TimingInfosCollector {
 
-    private List<TimingInfo> timingInfos = Collections.synchronizedList(new LinkedList<>());
+    /**
+     * Maximum number of {@link TimingInfo}s kept per context, 0 (default) keeps all of them
+     */
+    public static final String RESERVOIR_SIZE = "tt.perf.timings.reservoir.size";
+
+    private final Map<String, ContextTimings> timingsPerContext = new ConcurrentHashMap<>();
+    private final Queue<ContextTimings> contextsInOrder = new ConcurrentLinkedQueue<>();
+    private final int reservoirSize = PropertyManager.getIntProperty(RESERVOIR_SIZE, 0);
     private Map<String, StopWatch> stopWatches = Collections.synchronizedMap(new HashMap<>());
     private boolean stopped = false;
 
+    /**
+     * Histogram and all timing infos or a reservoir sample (algorithm R) of one context
+     */
+    private static class ContextTimings {
+        private final String context;
+        private final DurationHistogram histogram = new DurationHistogram();
+        private final AtomicReferenceArray<TimingInfo> reservoir;
+        private final Queue<TimingInfo> timingInfos;
+        private final AtomicLong seen = new AtomicLong();
+
+        private ContextTimings(String context, int reservoirSize) {
+            this.context = context;
+            if (reservoirSize > 0) {
+                this.reservoir = new AtomicReferenceArray<>(reservoirSize);
+                this.timingInfos = null;
+            } else {
+                this.reservoir = null;
+                this.timingInfos = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        private void add(TimingInfo timingInfo) {
+            histogram.record(timingInfo.getLoadDuration());
+            if (reservoir == null) {
+                timingInfos.add(timingInfo);
+                return;
+            }
+            int size = reservoir.length();
+            long position = seen.incrementAndGet();
+            if (position <= size) {
+                reservoir.set((int) (position - 1), timingInfo);
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(position);
+                if (slot < size) {
+                    reservoir.set((int) slot, timingInfo);
+                }
+            }
+        }
+
+        private List<TimingInfo> getSamples() {
+            if (reservoir == null) {
+                return new ArrayList<>(timingInfos);
+            }
+            List<TimingInfo> samples = new ArrayList<>(reservoir.length());
+            for (int i = 0; i < reservoir.length(); i++) {
+                TimingInfo timingInfo = reservoir.get(i);
+                if (timingInfo != null) {
+                    samples.add(timingInfo);
+                }
+            }
+            return samples;
+        }
+    }
+
     public void start(String context) {
         if (stopped) {
             return;
@@ -49,16 +119,23 @@ public class TimingInfosCollector {
     }
 
     public void add(final TimingInfo timingInfo) {
-        timingInfos.add(timingInfo);
+        getContextTimings(timingInfo.getContext()).add(timingInfo);
+    }
+
+    private ContextTimings getContextTimings(String context) {
+        return timingsPerContext.computeIfAbsent(context, key -> {
+            ContextTimings contextTimings = new ContextTimings(key, reservoirSize);
+            contextsInOrder.add(contextTimings);
+            return contextTimings;
+        });
     }
 
     private void pStop(String context) {
-        StopWatch stopWatch = stopWatches.get(context);
+        StopWatch stopWatch = stopWatches.remove(context);
         if (stopWatch != null) {
             stopWatch.stop();
             long time = stopWatch.getTime();
-            timingInfos.add(new TimingInfo(context, "", time, System.currentTimeMillis()));
-            stopWatches.remove(context);
+            add(new TimingInfo(context, "", time, System.currentTimeMillis()));
         }
     }
 
@@ -76,72 +153,58 @@ public class TimingInfosCollector {
     }
 
     public Calculations calculate() {
-        /*
-         generate context maps
-          */
-        Map<String, List<Long>> times = new LinkedHashMap<>();
-        Map<String, List<TimingInfo>> timingInfosPerContext = new LinkedHashMap<>();
-
-        // create empty lists
-        timingInfos.stream().forEach(i -> {
-            String context = i.getContext();
-            if (!times.containsKey(context)) {
-                times.put(context, new LinkedList<>());
-                timingInfosPerContext.put(context, new LinkedList<>());
-            }
-        });
-        // push values to lists
-        timingInfos.stream().forEach(i -> {
-            String context = i.getContext();
-            long loadDuration = i.getLoadDuration();
-            times.get(context).add(loadDuration);
-            timingInfosPerContext.get(context).add(i);
-        });
-
-        return calculate_new(times, timingInfosPerContext);
-    }
-
-	private Calculations calculate_new(Map<String, List<Long>> times,
-			Map<String, List<TimingInfo>> timingInfosPerContext) {
-		/*
-         calculate
-          */
         Map<String, Long> minValuesPerContext = new LinkedHashMap<>();
         Map<String, Long> avgValuesPerContext = new LinkedHashMap<>();
         Map<String, Long> maxValuesPerContext = new LinkedHashMap<>();
+        Map<String, Long> p50ValuesPerContext = new LinkedHashMap<>();
+        Map<String, Long> p90ValuesPerContext = new LinkedHashMap<>();
+        Map<String, Long> p99ValuesPerContext = new LinkedHashMap<>();
+        Map<String, DurationHistogram> histogramsPerContext = new LinkedHashMap<>();
+        Map<String, List<TimingInfo>> timingInfosPerContext = new LinkedHashMap<>();
 
-        times.keySet().stream().forEach(context -> {
-            List<Long> measurements = times.get(context);
-            Long minValue = NumberUtils.getMinValue(measurements);
-            Long avgValue = NumberUtils.getAverageValue(measurements);
-            Long maxValue = NumberUtils.getMaxValue(measurements);
-
-            minValuesPerContext.put(context, minValue);
-            avgValuesPerContext.put(context, avgValue);
-            maxValuesPerContext.put(context, maxValue);
+        contextsInOrder.forEach(contextTimings -> {
+            String context = contextTimings.context;
+            DurationHistogram histogram = contextTimings.histogram;
+
+            minValuesPerContext.put(context, histogram.getMin());
+            avgValuesPerContext.put(context, histogram.getAverage());
+            maxValuesPerContext.put(context, histogram.getMax());
+            p50ValuesPerContext.put(context, histogram.getValueAtPercentile(50));
+            p90ValuesPerContext.put(context, histogram.getValueAtPercentile(90));
+            p99ValuesPerContext.put(context, histogram.getValueAtPercentile(99));
+            histogramsPerContext.put(context, histogram);
+            timingInfosPerContext.put(context, contextTimings.getSamples());
         });
 
         calculations.minPerActions = minValuesPerContext;
         calculations.avgPerActions = avgValuesPerContext;
         calculations.maxPerActions = maxValuesPerContext;
+        calculations.p50PerActions = p50ValuesPerContext;
+        calculations.p90PerActions = p90ValuesPerContext;
+        calculations.p99PerActions = p99ValuesPerContext;
+        calculations.histogramsPerAction = histogramsPerContext;
         calculations.timingInfosPerAction = timingInfosPerContext;
         calculations.empty = false;
 
         return calculations;
-	}
+    }
 
     public Calculations getCalculations() {
         return calculations;
     }
 
     public void announceTimingInfos(Collection<? extends TimingInfo> timingInfosToMerge) {
-        timingInfos.addAll(timingInfosToMerge);
+        timingInfosToMerge.forEach(this::add);
     }
 
     public static class Calculations {
         Map<String, Long> minPerActions;
         Map<String, Long> avgPerActions;
         Map<String, Long> maxPerActions;
+        Map<String, Long> p50PerActions;
+        Map<String, Long> p90PerActions;
+        Map<String, Long> p99PerActions;
+        Map<String, DurationHistogram> histogramsPerAction;
         Map<String, List<TimingInfo>> timingInfosPerAction;
         boolean empty = true;
 
@@ -157,6 +220,28 @@ public class TimingInfosCollector {
             return maxPerActions;
         }
 
+        public Map<String, Long> getP50PerActions() {
+            return p50PerActions;
+        }
+
+        public Map<String, Long> getP90PerActions() {
+            return p90PerActions;
+        }
+
+        public Map<String, Long> getP99PerActions() {
+            return p99PerActions;
+        }
+
+        /**
+         * @return The live histograms, use {@link DurationHistogram#getValueAtPercentile(double)} for other percentiles
+         */
+        public Map<String, DurationHistogram> getHistogramsPerAction() {
+            return histogramsPerAction;
+        }
+
+        /**
+         * @return A random sample of at most {@link #RESERVOIR_SIZE} timing infos per action
+         */
         public Map<String, List<TimingInfo>> getTimingInfosPerAction() {
             return timingInfosPerAction;
         }
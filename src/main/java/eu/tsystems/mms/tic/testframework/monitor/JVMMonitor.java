@@ -22,23 +22,37 @@
 
 package eu.tsystems.mms.tic.testframework.monitor;
 
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
 import eu.tsystems.mms.tic.testframework.internal.ConsumptionMeasurementsCollector;
-import eu.tsystems.mms.tic.testframework.utils.JVMUtils;
+import eu.tsystems.mms.tic.testframework.internal.TimeSeries;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JVMMonitor {
 
-    private static final int GC_THRESHOLD = 500;
+    /**
+     * Interval of the telemetry measurements in milliseconds
+     */
+    public static final String RESOLUTION = "tt.monitor.resolution.ms";
+
     private static final long MB = 1024 * 1024;
     private static final Logger LOGGER = LoggerFactory.getLogger(JVMMonitor.class);
 
     private static final Object LOCK = new Object();
-    private static final Map<Long, Long> MEASUREMENTS = new LinkedHashMap<>();
-    private static final Map<Long, Long> MEASUREMENTS_TOTAL = new LinkedHashMap<>();
-    private static final Map<Integer, String> LABELS = new LinkedHashMap<>();
+    private static final int CAPACITY = PropertyManager.getIntProperty(ConsumptionMeasurementsCollector.TIME_SERIES_CAPACITY, 4096);
+    private static final TimeSeries MEASUREMENTS = new TimeSeries(CAPACITY);
+    private static final TimeSeries MEASUREMENTS_TOTAL = new TimeSeries(CAPACITY);
+    /**
+     * Labels by timestamp of the labeled measurement, independent of downsampling
+     */
+    private static final Map<Long, String> LABELS = new TreeMap<>();
 
     private static final Runtime RUNTIME = Runtime.getRuntime();
     private static final long MAX_MEMORY = RUNTIME.maxMemory() / MB;
@@ -54,6 +68,18 @@ public class JVMMonitor {
             new ConsumptionMeasurementsCollector.ContextMeasurement("JVM Memory Reserved", "Mem", "MB");
     private static final ConsumptionMeasurementsCollector.ContextMeasurement cmCPU =
             new ConsumptionMeasurementsCollector.ContextMeasurement("JVM CPU", "CPU", "%");
+    private static final ConsumptionMeasurementsCollector.ContextMeasurement cmAllocationRate =
+            new ConsumptionMeasurementsCollector.ContextMeasurement("JVM Allocation Rate", "Mem", "MB/s");
+    private static final ConsumptionMeasurementsCollector.ContextMeasurement cmThreads =
+            new ConsumptionMeasurementsCollector.ContextMeasurement("JVM Threads", "Threads", "");
+    private static final ConsumptionMeasurementsCollector.ContextMeasurement cmGCCount =
+            new ConsumptionMeasurementsCollector.ContextMeasurement("JVM GC Count", "GC", "");
+    private static final ConsumptionMeasurementsCollector.ContextMeasurement cmSafepointTime =
+            new ConsumptionMeasurementsCollector.ContextMeasurement("JVM Safepoint Time", "Time", "ms");
+    private static final Map<String, ConsumptionMeasurementsCollector.ContextMeasurement> cmGCTimePerCollector = new ConcurrentHashMap<>();
+
+    private static final JVMTelemetry TELEMETRY = new JVMTelemetry();
+    private static volatile int processCpuPercent = -1;
 
     static {
         //        cmc.setSquash(true);
@@ -93,9 +119,8 @@ public class JVMMonitor {
                 }
             } else {
                 // wenn mit label, dann ajF hinzufuegen
-                putValueToMap(usedMem, total);
-                int position = MEASUREMENTS.size() - 1; // must be 1+
-                LABELS.put(position, labelOrNull);
+                long timeMillis = putValueToMap(usedMem, total);
+                LABELS.merge(timeMillis, labelOrNull, (previous, label) -> previous + ", " + label);
             }
 
             return usedMem;
@@ -106,18 +131,19 @@ public class JVMMonitor {
         return RUNTIME.totalMemory() / MB;
     }
 
-    private static void putValueToMap(long value, long total) {
+    private static long putValueToMap(long value, long total) {
         long timeMillis = System.currentTimeMillis();
-        MEASUREMENTS.put(timeMillis, value);
-        MEASUREMENTS_TOTAL.put(timeMillis, total);
+        MEASUREMENTS.add(timeMillis, value);
+        MEASUREMENTS_TOTAL.add(timeMillis, total);
         lastValue = value;
         lastValueTotal = total;
+        return timeMillis;
     }
 
     public static String getJVMUsageInfo() {
         long usedMem = getValue(null);
         long total = getTotal();
-        int cpuUsage = JVMUtils.getCPUUsagePercent();
+        int cpuUsage = processCpuPercent;
 
         // push values to new cm storage
         cmc.addValue(cmMemUsage, usedMem);
@@ -131,44 +157,59 @@ public class JVMMonitor {
         LOGGER.debug(getJVMUsageInfo());
     }
 
-    private static boolean threadStop = false;
     private static int sleepTimeInMS = 10000;
-
-    private static Thread MONITOR_THREAD = null;
+    private static final int resolutionInMS = PropertyManager.getIntProperty(RESOLUTION, 1000);
+
+    private static ScheduledExecutorService MONITOR_EXECUTOR = null;
+
+    /**
+     * Feeds the telemetry values of the last interval into the consumption measurements
+     */
+    private static void measureTelemetry() {
+        JVMTelemetry.Sample sample = TELEMETRY.sample();
+        processCpuPercent = sample.getProcessCpuPercent();
+
+        cmc.addValue(cmAllocationRate, sample.getAllocationRateMBPerSecond());
+        cmc.addValue(cmThreads, sample.getThreadCount());
+        cmc.addValue(cmGCCount, sample.getGcCount());
+        sample.getGcTimeMillisPerCollector().forEach((collector, time) -> {
+            ConsumptionMeasurementsCollector.ContextMeasurement cmGCTime = cmGCTimePerCollector.computeIfAbsent(collector,
+                    name -> new ConsumptionMeasurementsCollector.ContextMeasurement("JVM GC Time " + name, "Time", "ms"));
+            cmc.addValue(cmGCTime, time);
+        });
+        if (sample.getSafepointTimeMillis() >= 0) {
+            cmc.addValue(cmSafepointTime, sample.getSafepointTimeMillis());
+        }
+    }
 
     private static void init() {
-        MONITOR_THREAD = new Thread(() -> {
-            LOGGER.debug("Started");
-            long start = System.currentTimeMillis();
-            long now;
-            while (!threadStop) {
-                now = System.currentTimeMillis();
-                try {
-                    Thread.sleep(500); // loop fast
-                } catch (InterruptedException e) {
-                    // ignore
-                }
-
-
-                if ((now - start >= sleepTimeInMS)) {
-                    logJVMUsageInfo();
-                    start = System.currentTimeMillis();
-
-                    if (lastValue > GC_THRESHOLD) {
-                        LOGGER.debug("Used Mem over threshold (" + GC_THRESHOLD + "), triggering GC");
-                        System.gc();
-                    }
-                }
-            }
+        MONITOR_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JVMMonitor");
+            thread.setDaemon(true);
+            return thread;
         });
+        MONITOR_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                measureTelemetry();
+            } catch (Throwable throwable) {
+                LOGGER.error("Error measuring JVM telemetry", throwable);
+            }
+        }, resolutionInMS, resolutionInMS, TimeUnit.MILLISECONDS);
+        MONITOR_EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                logJVMUsageInfo();
+            } catch (Throwable throwable) {
+                LOGGER.error("Error logging JVM usage", throwable);
+            }
+        }, sleepTimeInMS, sleepTimeInMS, TimeUnit.MILLISECONDS);
+        LOGGER.debug("Started");
     }
 
     public static void start() {
-        if (MONITOR_THREAD != null && (MONITOR_THREAD.isAlive() || MONITOR_THREAD.isDaemon())) {
+        if (MONITOR_EXECUTOR != null && !MONITOR_EXECUTOR.isShutdown()) {
             stop();
         }
         init();
-        MONITOR_THREAD.start();
     }
 
     public static void start(int sleepTimeInMS) {
@@ -177,30 +218,81 @@ public class JVMMonitor {
     }
 
     public static void stop() {
-        threadStop = true;
-        try {
-            MONITOR_THREAD.join(30000);
-        } catch (InterruptedException e) {
-            LOGGER.error("Error joining monitor thread", e);
+        if (MONITOR_EXECUTOR != null) {
+            MONITOR_EXECUTOR.shutdown();
+            try {
+                MONITOR_EXECUTOR.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                LOGGER.error("Error joining monitor thread", e);
+            }
         }
+        measureTelemetry();
         logJVMUsageInfo();
         LOGGER.debug("Stopped");
     }
 
+    /**
+     * @return A snapshot of the used memory
+     */
+    public static TimeSeries.Snapshot getMeasurementsSnapshot() {
+        return MEASUREMENTS.snapshot();
+    }
+
+    /**
+     * @return A snapshot of the reserved memory
+     */
+    public static TimeSeries.Snapshot getMeasurementsTotalSnapshot() {
+        return MEASUREMENTS_TOTAL.snapshot();
+    }
+
+    /**
+     * @return A snapshot of the used memory
+     * @deprecated Loses measurements taken in the same millisecond, use {@link #getMeasurementsSnapshot()}
+     */
+    @Deprecated
     public static Map<Long, Long> getMeasurements() {
-        return MEASUREMENTS;
+        return MEASUREMENTS.toMap();
     }
 
+    /**
+     * @return A snapshot of the reserved memory
+     * @deprecated Loses measurements taken in the same millisecond, use {@link #getMeasurementsTotalSnapshot()}
+     */
+    @Deprecated
     public static Map<Long, Long> getMeasurementsTotal() {
-        return MEASUREMENTS_TOTAL;
+        return MEASUREMENTS_TOTAL.toMap();
     }
 
     public static long getMaxMemory() {
         return MAX_MEMORY;
     }
 
+    /**
+     * @return A snapshot of the labels by position in {@link #getMeasurementsSnapshot()}.
+     * When the labeled measurement has been removed by downsampling, the label refers to the preceding measurement.
+     */
     public static Map<Integer, String> getLabels() {
-        return LABELS;
+        synchronized (LOCK) {
+            Map<Integer, String> labels = new LinkedHashMap<>();
+            TimeSeries.Snapshot measurements = MEASUREMENTS.snapshot();
+            int position = 0;
+            for (Map.Entry<Long, String> entry : LABELS.entrySet()) {
+                while (position + 1 < measurements.size() && measurements.getTimestamp(position + 1) <= entry.getKey()) {
+                    position++;
+                }
+                labels.merge(position, entry.getValue(), (previous, label) -> previous + ", " + label);
+            }
+            return labels;
+        }
+    }
+
+    /**
+     * @return A snapshot of the labels by timestamp of the labeled measurement
+     */
+    public static Map<Long, String> getLabelsByTimestamp() {
+        synchronized (LOCK) {
+            return new LinkedHashMap<>(LABELS);
+        }
     }
 
     public static ConsumptionMeasurementsCollector getConsumptionMeasurementsCollector() {
@@ -0,0 +1,302 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.monitor;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Low overhead JVM telemetry based on platform MXBeans.
+ * Garbage collections are received as notifications, so no polling or forced collection is needed.
+ * Every call of {@link #sample()} returns the values since the previous sample.
+ */
+public class JVMTelemetry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JVMTelemetry.class);
+
+    private final OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final int availableProcessors = Runtime.getRuntime().availableProcessors();
+    private final ConcurrentMap<String, CollectorStatistics> collectors = new ConcurrentHashMap<>();
+    private final LongAdder bytesFreed = new LongAdder();
+    private final List<Runnable> unregisterActions = new ArrayList<>();
+    private Object hotspotRuntimeBean;
+    private Method safepointTimeMethod;
+
+    private long lastSampleNanos;
+    private long lastProcessCpuNanos;
+    private long lastHeapUsed;
+    private long lastBytesFreed;
+    private long lastSafepointTime;
+    private Map<String, long[]> lastCollectorValues = Collections.emptyMap();
+
+    /**
+     * Cumulated values of a single garbage collector
+     */
+    public static class CollectorStatistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder timeMillis = new LongAdder();
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTimeMillis() {
+            return timeMillis.sum();
+        }
+    }
+
+    /**
+     * Telemetry values of one interval
+     */
+    public static class Sample {
+        private final long intervalMillis;
+        private final int processCpuPercent;
+        private final long gcCount;
+        private final long gcTimeMillis;
+        private final Map<String, Long> gcTimeMillisPerCollector;
+        private final long allocationRateMBPerSecond;
+        private final int threadCount;
+        private final long safepointTimeMillis;
+
+        private Sample(long intervalMillis, int processCpuPercent, long gcCount, long gcTimeMillis, Map<String, Long> gcTimeMillisPerCollector,
+                       long allocationRateMBPerSecond, int threadCount, long safepointTimeMillis) {
+            this.intervalMillis = intervalMillis;
+            this.processCpuPercent = processCpuPercent;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+            this.gcTimeMillisPerCollector = gcTimeMillisPerCollector;
+            this.allocationRateMBPerSecond = allocationRateMBPerSecond;
+            this.threadCount = threadCount;
+            this.safepointTimeMillis = safepointTimeMillis;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        /**
+         * @return CPU usage of this process over all cores, -1 if not available
+         */
+        public int getProcessCpuPercent() {
+            return processCpuPercent;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        /**
+         * @return Time reported by all collectors in this interval
+         */
+        public long getGcTimeMillis() {
+            return gcTimeMillis;
+        }
+
+        public Map<String, Long> getGcTimeMillisPerCollector() {
+            return gcTimeMillisPerCollector;
+        }
+
+        public long getAllocationRateMBPerSecond() {
+            return allocationRateMBPerSecond;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        /**
+         * @return Time spent in safepoints, -1 if not available on this JVM
+         */
+        public long getSafepointTimeMillis() {
+            return safepointTimeMillis;
+        }
+    }
+
+    public JVMTelemetry() {
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.put(gcBean.getName(), new CollectorStatistics());
+            if (gcBean instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gcBean;
+                NotificationListener listener = this::handleNotification;
+                emitter.addNotificationListener(listener, null, null);
+                unregisterActions.add(() -> {
+                    try {
+                        emitter.removeNotificationListener(listener);
+                    } catch (ListenerNotFoundException e) {
+                        // already removed
+                    }
+                });
+            }
+        }
+        initSafepointTime();
+        lastSampleNanos = System.nanoTime();
+        lastProcessCpuNanos = getProcessCpuNanos();
+        lastHeapUsed = memoryMXBean.getHeapMemoryUsage().getUsed();
+        lastSafepointTime = getSafepointTime();
+        lastCollectorValues = getCollectorValues();
+    }
+
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        CollectorStatistics statistics = collectors.computeIfAbsent(info.getGcName(), name -> new CollectorStatistics());
+        statistics.count.increment();
+        statistics.timeMillis.add(info.getGcInfo().getDuration());
+
+        long before = 0;
+        long after = 0;
+        for (MemoryUsage usage : info.getGcInfo().getMemoryUsageBeforeGc().values()) {
+            before += usage.getUsed();
+        }
+        for (MemoryUsage usage : info.getGcInfo().getMemoryUsageAfterGc().values()) {
+            after += usage.getUsed();
+        }
+        if (before > after) {
+            bytesFreed.add(before - after);
+        }
+    }
+
+    private long getProcessCpuNanos() {
+        if (osMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osMXBean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * The HotSpot internal runtime bean is not accessible on every JVM
+     */
+    private void initSafepointTime() {
+        try {
+            Method getBean = Class.forName("sun.management.ManagementFactoryHelper").getDeclaredMethod("getHotspotRuntimeMBean");
+            getBean.setAccessible(true);
+            hotspotRuntimeBean = getBean.invoke(null);
+            safepointTimeMethod = Class.forName("sun.management.HotspotRuntimeMBean").getMethod("getTotalSafepointTime");
+            safepointTimeMethod.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Safepoint time not available: " + e);
+            hotspotRuntimeBean = null;
+            safepointTimeMethod = null;
+        }
+    }
+
+    private long getSafepointTime() {
+        if (safepointTimeMethod == null) {
+            return -1;
+        }
+        try {
+            return (long) safepointTimeMethod.invoke(hotspotRuntimeBean);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private Map<String, long[]> getCollectorValues() {
+        Map<String, long[]> values = new TreeMap<>();
+        collectors.forEach((name, statistics) -> values.put(name, new long[]{statistics.getCount(), statistics.getTimeMillis()}));
+        return values;
+    }
+
+    /**
+     * @return The values since the previous sample
+     */
+    public synchronized Sample sample() {
+        long now = System.nanoTime();
+        long intervalNanos = Math.max(1, now - lastSampleNanos);
+
+        int processCpuPercent = -1;
+        long processCpuNanos = getProcessCpuNanos();
+        if (processCpuNanos >= 0 && lastProcessCpuNanos >= 0) {
+            processCpuPercent = (int) (100 * (processCpuNanos - lastProcessCpuNanos) / (intervalNanos * availableProcessors));
+        }
+
+        long heapUsed = memoryMXBean.getHeapMemoryUsage().getUsed();
+        long freed = bytesFreed.sum();
+        long allocatedBytes = Math.max(0, heapUsed - lastHeapUsed + freed - lastBytesFreed);
+        long allocationRate = allocatedBytes * 1_000_000_000L / intervalNanos / (1024 * 1024);
+
+        Map<String, long[]> collectorValues = getCollectorValues();
+        Map<String, Long> gcTimePerCollector = new TreeMap<>();
+        long gcCount = 0;
+        long gcTime = 0;
+        for (Map.Entry<String, long[]> entry : collectorValues.entrySet()) {
+            long[] last = lastCollectorValues.getOrDefault(entry.getKey(), new long[2]);
+            long time = entry.getValue()[1] - last[1];
+            gcCount += entry.getValue()[0] - last[0];
+            gcTime += time;
+            gcTimePerCollector.put(entry.getKey(), time);
+        }
+
+        long safepointTime = getSafepointTime();
+        long safepointTimeInterval = (safepointTime >= 0 && lastSafepointTime >= 0 ? safepointTime - lastSafepointTime : -1);
+
+        lastSampleNanos = now;
+        lastProcessCpuNanos = processCpuNanos;
+        lastHeapUsed = heapUsed;
+        lastBytesFreed = freed;
+        lastCollectorValues = collectorValues;
+        lastSafepointTime = safepointTime;
+
+        return new Sample(intervalNanos / 1_000_000, processCpuPercent, gcCount, gcTime, gcTimePerCollector,
+                allocationRate, threadMXBean.getThreadCount(), safepointTimeInterval);
+    }
+
+    /**
+     * @return Cumulated values per garbage collector since creation
+     */
+    public Map<String, CollectorStatistics> getCollectorStatistics() {
+        return Collections.unmodifiableMap(collectors);
+    }
+
+    /**
+     * Removes the garbage collection listeners
+     */
+    public void close() {
+        unregisterActions.forEach(Runnable::run);
+        unregisterActions.clear();
+    }
+}
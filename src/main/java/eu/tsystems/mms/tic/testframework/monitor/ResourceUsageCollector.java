@@ -0,0 +1,129 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.monitor;
+
+import com.google.common.eventbus.Subscribe;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import eu.tsystems.mms.tic.testframework.events.FinalizeExecutionEvent;
+import eu.tsystems.mms.tic.testframework.events.MethodEndEvent;
+import eu.tsystems.mms.tic.testframework.events.MethodStartEvent;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.report.model.context.ClassContext;
+import eu.tsystems.mms.tic.testframework.report.model.context.MethodContext;
+import eu.tsystems.mms.tic.testframework.report.model.context.ResourceUsage;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the {@link ResourceUsage} of every test method and logs the most expensive tests and classes at the end of the execution.
+ */
+public class ResourceUsageCollector implements
+        MethodStartEvent.Listener,
+        MethodEndEvent.Listener,
+        FinalizeExecutionEvent.Listener,
+        Loggable
+{
+    /**
+     * Number of most expensive tests and classes to log, 0 disables the log
+     */
+    public static final String TOP_COUNT = "tt.report.resource.usage.top";
+
+    private final int topCount = PropertyManager.getIntProperty(TOP_COUNT, 10);
+    private final Queue<MethodContext> measuredMethodContexts = new ConcurrentLinkedQueue<>();
+
+    @Override
+    @Subscribe
+    public void onMethodStart(MethodStartEvent event) {
+        MethodContext methodContext = event.getMethodContext();
+        if (methodContext != null) {
+            methodContext.getResourceUsage().start();
+        }
+    }
+
+    @Override
+    @Subscribe
+    public void onMethodEnd(MethodEndEvent event) {
+        MethodContext methodContext = event.getMethodContext();
+        if (methodContext != null) {
+            methodContext.getResourceUsage().stop();
+            measuredMethodContexts.add(methodContext);
+        }
+    }
+
+    /**
+     * @return The test methods with the highest CPU time
+     */
+    public List<MethodContext> getMostExpensiveMethodContexts(int count) {
+        return measuredMethodContexts.stream()
+                .filter(MethodContext::isTestMethod)
+                .sorted(Comparator.comparingLong((MethodContext methodContext) -> methodContext.getResourceUsage().getCpuTimeNanos()).reversed())
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The classes with the highest CPU time of all their methods, including configuration methods
+     */
+    public Map<ClassContext, Long> getMostExpensiveClassContexts(int count) {
+        Map<ClassContext, Long> cpuTimePerClass = measuredMethodContexts.stream()
+                .filter(methodContext -> methodContext.getClassContext() != null)
+                .collect(Collectors.groupingBy(
+                        MethodContext::getClassContext,
+                        Collectors.summingLong(methodContext -> Math.max(0, methodContext.getResourceUsage().getCpuTimeNanos()))
+                ));
+        Map<ClassContext, Long> mostExpensive = new LinkedHashMap<>();
+        cpuTimePerClass.entrySet().stream()
+                .sorted(Map.Entry.<ClassContext, Long>comparingByValue().reversed())
+                .limit(count)
+                .forEach(entry -> mostExpensive.put(entry.getKey(), entry.getValue()));
+        return mostExpensive;
+    }
+
+    @Override
+    @Subscribe
+    public void onFinalizeExecution(FinalizeExecutionEvent event) {
+        if (topCount <= 0 || measuredMethodContexts.isEmpty()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder("Most expensive tests:");
+        getMostExpensiveMethodContexts(topCount).forEach(methodContext -> {
+            ResourceUsage resourceUsage = methodContext.getResourceUsage();
+            builder.append(String.format("%n  %s.%s: CPU %d ms, allocated %d MB, wall %d ms",
+                    methodContext.getClassContext().getName(),
+                    methodContext.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(resourceUsage.getCpuTimeNanos()),
+                    resourceUsage.getAllocatedBytes() / (1024 * 1024),
+                    TimeUnit.NANOSECONDS.toMillis(resourceUsage.getWallTimeNanos())));
+        });
+        builder.append(String.format("%nMost expensive classes:"));
+        getMostExpensiveClassContexts(topCount).forEach((classContext, cpuTimeNanos) -> {
+            builder.append(String.format("%n  %s: CPU %d ms", classContext.getName(), TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos)));
+        });
+        log().info(builder.toString());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Testerra
+ *
+ * (C) 2021, Mike Reiche,  T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package eu.tsystems.mms.tic.testframework.report;
+
+import com.google.common.eventbus.Subscribe;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import eu.tsystems.mms.tic.testframework.events.FinalizeExecutionEvent;
+import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.ShardMethodInterceptor;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.report.model.context.ExecutionContextMerger;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exports the method contexts to the {@link ExecutionContextMerger#FILE_NAME} in the report directory,
+ * when the execution has been finalized. The files of several shards can be merged by the {@link ExecutionContextMerger}.
+ */
+public class ContextExportWorker implements FinalizeExecutionEvent.Listener, Loggable {
+
+    /**
+     * Enables the export, enabled by default when {@link ShardMethodInterceptor#SHARD_COUNT} is greater than 1
+     */
+    public static final String EXPORT = "tt.context.export";
+
+    public static boolean isEnabled() {
+        return PropertyManager.getBooleanProperty(EXPORT, getShardCount() > 1);
+    }
+
+    private static int getShardCount() {
+        return PropertyManager.getIntProperty(ShardMethodInterceptor.SHARD_COUNT, 1);
+    }
+
+    @Override
+    @Subscribe
+    public void onFinalizeExecution(FinalizeExecutionEvent event) {
+        String shard = getShardCount() > 1 ? PropertyManager.getProperty(ShardMethodInterceptor.SHARD_INDEX, "0") : "";
+        File file = new File(TesterraListener.getReport().getReportDirectory(), ExecutionContextMerger.FILE_NAME);
+        try {
+            ExecutionContextMerger.export(event.getExecutionContext(), shard, file.toPath());
+            log().info("Method contexts exported to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            log().error("Could not export method contexts", e);
+        }
+    }
+}
@@ -40,15 +40,20 @@ import eu.tsystems.mms.tic.testframework.execution.testng.worker.finish.MethodEn
 import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.MethodParametersWorker;
 import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.MethodStartWorker;
 import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.OmitInDevelopmentMethodInterceptor;
+import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.ShardMethodInterceptor;
+import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.SortMethodsByDurationMethodInterceptor;
 import eu.tsystems.mms.tic.testframework.execution.testng.worker.start.SortMethodsByPriorityMethodInterceptor;
 import eu.tsystems.mms.tic.testframework.internal.BuildInformation;
+import eu.tsystems.mms.tic.testframework.internal.Flags;
 import eu.tsystems.mms.tic.testframework.logging.Loggable;
 import eu.tsystems.mms.tic.testframework.monitor.JVMMonitor;
+import eu.tsystems.mms.tic.testframework.monitor.ResourceUsageCollector;
 import eu.tsystems.mms.tic.testframework.report.hooks.ConfigMethodHook;
 import eu.tsystems.mms.tic.testframework.report.hooks.TestMethodHook;
 import eu.tsystems.mms.tic.testframework.report.model.context.ClassContext;
 import eu.tsystems.mms.tic.testframework.report.model.context.MethodContext;
 import eu.tsystems.mms.tic.testframework.report.model.steps.TestStep;
+import eu.tsystems.mms.tic.testframework.report.perf.PerfTestReportWorker;
 import eu.tsystems.mms.tic.testframework.report.utils.DefaultTestNGContextGenerator;
 import eu.tsystems.mms.tic.testframework.report.utils.ExecutionContextController;
 import java.util.Date;
@@ -120,6 +125,7 @@ public class TesterraListener implements
     private static final Report report;
     private static DefaultTestNGContextGenerator contextGenerator;
     private static final TestStatusController testStatusController = new TestStatusController();
+    private static final ResourceUsageCollector resourceUsageCollector = new ResourceUsageCollector();
     private static final ConcurrentHashMap<ITestNGMethod, Boolean> dataProviderSemaphore = new ConcurrentHashMap<>();
 
     static {
@@ -148,13 +154,24 @@ public class TesterraListener implements
         eventBus.register(new MethodStartWorker());
         eventBus.register(new MethodParametersWorker());
         eventBus.register(new MethodContextUpdateWorker());
+        eventBus.register(resourceUsageCollector);
 
         eventBus.register(new OmitInDevelopmentMethodInterceptor());
+        eventBus.register(new ShardMethodInterceptor());
         eventBus.register(new SortMethodsByPriorityMethodInterceptor());
+        eventBus.register(new SortMethodsByDurationMethodInterceptor());
 
         eventBus.register(new ExecutionEndListener());
         eventBus.register(testStatusController);
 
+        if (Flags.GENERATE_PERF_STATISTICS) {
+            eventBus.register(new PerfTestReportWorker());
+        }
+
+        if (ContextExportWorker.isEnabled()) {
+            eventBus.register(new ContextExportWorker());
+        }
+
         /*
         Call Booter
          */
@@ -189,6 +206,10 @@ public class TesterraListener implements
         return testStatusController;
     }
 
+    public static ResourceUsageCollector getResourceUsageCollector() {
+        return resourceUsageCollector;
+    }
+
     public static DefaultTestNGContextGenerator getContextGenerator() {
         if (contextGenerator == null) {
             contextGenerator = new DefaultTestNGContextGenerator();
@@ -40,7 +40,7 @@ public abstract class AbstractContext implements Loggable {
     private String name;
     private final String id = IDUtils.getB64encXID();
     private AbstractContext parentContext;
-    private final Date startTime = new Date();
+    private Date startTime = new Date();
     private Date endTime;
     private Map<String, Object> metaData;
 
@@ -79,6 +79,27 @@ public abstract class AbstractContext implements Loggable {
         this.parentContext = context;
     }
 
+    /**
+     * Used when restoring contexts of other executions
+     */
+    void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Sets the end time of this context and extends the end time of the parent contexts if required.
+     * Used when restoring contexts of other executions.
+     */
+    void extendEndTimeRecursive(Date date) {
+        AbstractContext context = this;
+        while (context != null) {
+            if (context.endTime == null || context.endTime.before(date)) {
+                context.endTime = date;
+            }
+            context = context.parentContext;
+        }
+    }
+
     /**
      * Gets an context for a specified name.
      * If it not exists, it will be created by a supplier,
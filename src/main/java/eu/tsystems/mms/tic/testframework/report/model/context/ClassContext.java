@@ -63,6 +63,13 @@ public class ClassContext extends AbstractContext implements Loggable {
         return this.methodContexts.stream();
     }
 
+    /**
+     * Used when restoring contexts of other executions
+     */
+    void addMethodContext(MethodContext methodContext) {
+        this.methodContexts.add(methodContext);
+    }
+
     public ClassContext setTestClassContext(TestClassContext testContext) {
         if (testContext.name().trim().length() > 0) {
             this.testClassContext = testContext;
@@ -0,0 +1,294 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.model.context;
+
+import eu.tsystems.mms.tic.testframework.report.FailureCorridor;
+import eu.tsystems.mms.tic.testframework.report.Status;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Flat, serializable representation of a {@link MethodContext} and the names of its parent contexts.
+ * A record is stored as one line of tab separated fields, tabs, line breaks and backslashes in values are escaped.
+ * Records are ordered by their {@link #getKey() key} and start time, the attempts of a method are adjacent in this order.
+ * Repeated invocations with the same parameters share the key as well, see {@link #isRetryOf(ContextRecord)}.
+ */
+public final class ContextRecord {
+
+    /**
+     * Order of records in exported and merged files
+     */
+    public static final Comparator<ContextRecord> ORDER = Comparator.comparing(ContextRecord::getKey)
+            .thenComparingLong(ContextRecord::getStartTime);
+
+    private static final int FIELD_COUNT = 14;
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final String suiteName;
+    private final String testName;
+    private final String className;
+    private final String classContextName;
+    private final String methodName;
+    private final String parameters;
+    private final MethodContext.Type methodType;
+    private final Status status;
+    private final int retryCounter;
+    private final String failureCorridor;
+    private final long startTime;
+    private final long endTime;
+    private final String threadName;
+    private final String shard;
+    private final String key;
+
+    private ContextRecord(String[] fields) {
+        this(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], MethodContext.Type.valueOf(fields[6]), Status.valueOf(fields[7]),
+                Integer.parseInt(fields[8]), fields[9], Long.parseLong(fields[10]), Long.parseLong(fields[11]), fields[12], fields[13]);
+    }
+
+    private ContextRecord(String suiteName, String testName, String className, String classContextName, String methodName, String parameters,
+                          MethodContext.Type methodType, Status status, int retryCounter, String failureCorridor, long startTime, long endTime,
+                          String threadName, String shard) {
+        this.suiteName = suiteName;
+        this.testName = testName;
+        this.className = className;
+        this.classContextName = classContextName;
+        this.methodName = methodName;
+        this.parameters = parameters;
+        this.methodType = methodType;
+        this.status = status;
+        this.retryCounter = retryCounter;
+        this.failureCorridor = failureCorridor;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.threadName = threadName;
+        this.shard = shard;
+        this.key = suiteName + KEY_SEPARATOR + testName + KEY_SEPARATOR + classContextName + KEY_SEPARATOR + className
+                + KEY_SEPARATOR + methodName + KEY_SEPARATOR + parameters;
+    }
+
+    /**
+     * @param shard Label of the node which executed the method, may be empty
+     */
+    public static ContextRecord of(MethodContext methodContext, String shard) {
+        ClassContext classContext = methodContext.getClassContext();
+        TestContext testContext = classContext.getTestContext();
+        SuiteContext suiteContext = testContext.getSuiteContext();
+        String parameters = methodContext.getParameterValues().stream().map(String::valueOf).collect(Collectors.joining(", "));
+        return new ContextRecord(
+                suiteContext.getName(),
+                testContext.getName(),
+                classContext.getTestClass().getName(),
+                classContext.getName(),
+                methodContext.getName(),
+                parameters,
+                methodContext.getMethodType(),
+                methodContext.getStatus(),
+                methodContext.getRetryCounter(),
+                methodContext.getFailureCorridorClass().getSimpleName(),
+                methodContext.getStartTime().getTime(),
+                methodContext.getEndTime() != null ? methodContext.getEndTime().getTime() : -1,
+                methodContext.getThreadName(),
+                shard
+        );
+    }
+
+    /**
+     * @throws IllegalArgumentException When the line is not a valid record
+     */
+    public static ContextRecord parse(String line) {
+        List<String> fields = new ArrayList<>(FIELD_COUNT);
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        if (fields.size() != FIELD_COUNT) {
+            throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields but found " + fields.size() + ": " + line);
+        }
+        return new ContextRecord(fields.toArray(new String[0]));
+    }
+
+    public String toLine() {
+        StringBuilder line = new StringBuilder(128);
+        appendField(line, suiteName);
+        appendField(line, testName);
+        appendField(line, className);
+        appendField(line, classContextName);
+        appendField(line, methodName);
+        appendField(line, parameters);
+        appendField(line, methodType.name());
+        appendField(line, status.name());
+        appendField(line, Integer.toString(retryCounter));
+        appendField(line, failureCorridor);
+        appendField(line, Long.toString(startTime));
+        appendField(line, Long.toString(endTime));
+        appendField(line, threadName);
+        appendField(line, shard);
+        return line.substring(0, line.length() - 1);
+    }
+
+    private static void appendField(StringBuilder line, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+        line.append('\t');
+    }
+
+    /**
+     * @return A copy with the given status and retry counter
+     */
+    public ContextRecord withStatus(Status status, int retryCounter) {
+        return new ContextRecord(suiteName, testName, className, classContextName, methodName, parameters, methodType, status, retryCounter,
+                failureCorridor, startTime, endTime, threadName, shard);
+    }
+
+    /**
+     * @return Identifies the invocations of a method with the same parameters, including their retries
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Repeated invocations by invocation count, without parameters or with duplicate data provider rows share the key,
+     * but are executed on the same shard without retry counter.
+     *
+     * @param previous The preceding record in {@link #ORDER}
+     * @return TRUE if this record is a retry of the previous invocation, either by the retry analyzer or on another shard
+     */
+    public boolean isRetryOf(ContextRecord previous) {
+        return key.equals(previous.key) && (retryCounter > 0 || !shard.equals(previous.shard));
+    }
+
+    public String getSuiteName() {
+        return suiteName;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    /**
+     * @return Fully qualified name of the test class
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    public String getClassContextName() {
+        return classContextName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return String values of the parameters, separated by comma
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    public MethodContext.Type getMethodType() {
+        return methodType;
+    }
+
+    public boolean isTestMethod() {
+        return methodType == MethodContext.Type.TEST_METHOD;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getRetryCounter() {
+        return retryCounter;
+    }
+
+    /**
+     * @return One of {@link FailureCorridor.High}, {@link FailureCorridor.Mid} or {@link FailureCorridor.Low}
+     */
+    public Class getFailureCorridorClass() {
+        if (FailureCorridor.Mid.class.getSimpleName().equals(failureCorridor)) {
+            return FailureCorridor.Mid.class;
+        } else if (FailureCorridor.Low.class.getSimpleName().equals(failureCorridor)) {
+            return FailureCorridor.Low.class;
+        }
+        return FailureCorridor.High.class;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return End time in milliseconds, -1 if the method has not been finished
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextRecord{" +
+                "key='" + key.replace(KEY_SEPARATOR, '/') + '\'' +
+                ", status=" + status +
+                ", shard='" + shard + '\'' +
+                '}';
+    }
+}
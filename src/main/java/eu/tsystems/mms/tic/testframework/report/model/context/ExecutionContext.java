@@ -89,7 +89,7 @@ public class ExecutionContext extends AbstractContext {
         return getSuiteContext(TesterraListener.getContextGenerator().getSuiteContextName(testResult));
     }
 
-    private synchronized SuiteContext getSuiteContext(String suiteContextName) {
+    synchronized SuiteContext getSuiteContext(String suiteContextName) {
         return getOrCreateContext(
                 suiteContexts,
                 suiteContextName,
@@ -0,0 +1,476 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.model.context;
+
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.report.FailureCorridor;
+import eu.tsystems.mms.tic.testframework.report.Status;
+import eu.tsystems.mms.tic.testframework.report.StatusCounter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the method contexts of several executions, like the nodes of a sharded run, into one.
+ * Every execution exports its contexts as {@link ContextRecord} lines ordered by {@link ContextRecord#ORDER}
+ * to the {@link #FILE_NAME} in its report directory, see {@link #export(ExecutionContext, String, Path)}.
+ *
+ * The files are merged by a k-way merge which holds only the current record of every file and the attempts of one method,
+ * so the memory does not depend on the number of method contexts. Suites, tests, classes and methods are merged by name.
+ * Attempts of the same method are linked as retries when they have a retry counter or have been executed on different shards,
+ * the status counts and failure corridor counts are recalculated.
+ * A merged file has the same format and can be merged again.
+ *
+ * <pre>
+ * java eu.tsystems.mms.tic.testframework.report.model.context.ExecutionContextMerger merged.tsv shard-0/report shard-1/report
+ * </pre>
+ */
+public class ExecutionContextMerger implements Loggable {
+
+    public static final String FILE_NAME = "execution-contexts.tsv";
+    private static final String HEADER = "# Testerra execution contexts v1";
+
+    private final List<Path> inputs = new ArrayList<>();
+
+    /**
+     * Statistics of a merge
+     */
+    public static class Result {
+        private final StatusCounter statusCounter = new StatusCounter();
+        private final Map<Class, Integer> failureCorridorCounts = new ConcurrentHashMap<>();
+        private final Set<String> shards = new TreeSet<>();
+        private int suiteCount = 0;
+        private int testCount = 0;
+        private int classCount = 0;
+        private long methodCount = 0;
+        private long linkedRetryCount = 0;
+        private ContextRecord previous;
+
+        private void count(ContextRecord record) {
+            if (previous == null || !previous.getSuiteName().equals(record.getSuiteName())) {
+                suiteCount++;
+                testCount++;
+                classCount++;
+            } else if (!previous.getTestName().equals(record.getTestName())) {
+                testCount++;
+                classCount++;
+            } else if (!previous.getClassContextName().equals(record.getClassContextName()) || !previous.getClassName().equals(record.getClassName())) {
+                classCount++;
+            }
+            previous = record;
+            methodCount++;
+            shards.add(record.getShard());
+
+            // Like the TestStatusController, only test methods are counted
+            if (record.isTestMethod()) {
+                statusCounter.increment(record.getStatus());
+                if (record.getStatus() == Status.FAILED) {
+                    failureCorridorCounts.merge(record.getFailureCorridorClass(), 1, Integer::sum);
+                }
+            }
+        }
+
+        public StatusCounter getStatusCounter() {
+            return statusCounter;
+        }
+
+        public int getFailureCorridorCount(Class failureCorridorClass) {
+            return failureCorridorCounts.getOrDefault(failureCorridorClass, 0);
+        }
+
+        /**
+         * Same rules as {@link FailureCorridor#isCorridorMatched()} for the merged counts
+         */
+        public boolean isFailureCorridorMatched() {
+            int testsSuccessful = statusCounter.get(Status.PASSED);
+            int testsFailed = statusCounter.get(Status.FAILED);
+            int testsSkipped = statusCounter.get(Status.SKIPPED);
+            if (testsSkipped > 0 || testsSuccessful + testsFailed == 0) {
+                return false;
+            }
+            int allowedHigh = FailureCorridor.getAllowedTestFailuresHIGH();
+            int allowedMid = FailureCorridor.getAllowedTestFailuresMID();
+            int allowedLow = FailureCorridor.getAllowedTestFailuresLOW();
+            if (allowedHigh > -1 && allowedMid > -1 && allowedLow > -1) {
+                return getFailureCorridorCount(FailureCorridor.High.class) <= allowedHigh
+                        && getFailureCorridorCount(FailureCorridor.Mid.class) <= allowedMid
+                        && getFailureCorridorCount(FailureCorridor.Low.class) <= allowedLow;
+            }
+            return true;
+        }
+
+        public int getSuiteCount() {
+            return suiteCount;
+        }
+
+        public int getTestCount() {
+            return testCount;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public long getMethodCount() {
+            return methodCount;
+        }
+
+        /**
+         * @return Number of attempts whose status or retry counter has been changed by linking them with other attempts
+         */
+        public long getLinkedRetryCount() {
+            return linkedRetryCount;
+        }
+
+        /**
+         * @return Labels of the executions, which have been merged
+         */
+        public Set<String> getShards() {
+            return shards;
+        }
+
+        @Override
+        public String toString() {
+            String statuses = Arrays.stream(Status.values())
+                    .filter(status -> statusCounter.get(status) > 0)
+                    .map(status -> statusCounter.get(status) + " " + status.title)
+                    .collect(Collectors.joining(", "));
+            return "Result{" +
+                    "suites=" + suiteCount +
+                    ", tests=" + testCount +
+                    ", classes=" + classCount +
+                    ", methods=" + methodCount +
+                    ", linkedRetries=" + linkedRetryCount +
+                    ", statuses=[" + statuses + "]" +
+                    ", failureCorridor=" + getFailureCorridorCount(FailureCorridor.High.class)
+                    + "-" + getFailureCorridorCount(FailureCorridor.Mid.class)
+                    + "-" + getFailureCorridorCount(FailureCorridor.Low.class) +
+                    '}';
+        }
+    }
+
+    /**
+     * Reads the records of one file in order
+     */
+    private static final class Cursor implements Closeable {
+        private final Path file;
+        private final BufferedReader reader;
+        private long lineNumber = 0;
+        private ContextRecord current;
+
+        private Cursor(Path file) throws IOException {
+            this.file = file;
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return FALSE at the end of the file
+         */
+        private boolean advance() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                ContextRecord record;
+                try {
+                    record = ContextRecord.parse(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid context record at " + file + ":" + lineNumber, e);
+                }
+                if (current != null && ContextRecord.ORDER.compare(current, record) > 0) {
+                    throw new IOException("Context records are not ordered at " + file + ":" + lineNumber);
+                }
+                current = record;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates the contexts of the merged records in an {@link ExecutionContext}
+     */
+    private static final class ContextBuilder implements Consumer<ContextRecord> {
+        private final ExecutionContext executionContext;
+        private ContextRecord previousRecord;
+        private ClassContext classContext;
+        private MethodContext previousMethodContext;
+
+        private ContextBuilder(ExecutionContext executionContext) {
+            this.executionContext = executionContext;
+        }
+
+        @Override
+        public void accept(ContextRecord record) {
+            if (previousRecord == null
+                    || !previousRecord.getSuiteName().equals(record.getSuiteName())
+                    || !previousRecord.getTestName().equals(record.getTestName())
+                    || !previousRecord.getClassContextName().equals(record.getClassContextName())
+                    || !previousRecord.getClassName().equals(record.getClassName())) {
+                SuiteContext suiteContext = executionContext.getSuiteContext(record.getSuiteName());
+                TestContext testContext = suiteContext.getTestContext(record.getTestName());
+                classContext = testContext.pGetClassContext(loadClass(record.getClassName()), record.getClassContextName());
+            }
+
+            MethodContext methodContext = new MethodContext(record.getMethodName(), record.getMethodType(), classContext);
+            methodContext.setStatus(record.getStatus());
+            methodContext.setRetryCounter(record.getRetryCounter());
+            methodContext.setFailureCorridorClass(record.getFailureCorridorClass());
+            if (!record.getParameters().isEmpty()) {
+                methodContext.setParameterValues(record.getParameters().split(", "));
+            }
+            methodContext.getMetaData().put("shard", record.getShard());
+            extendStartTimeRecursive(methodContext, new Date(record.getStartTime()));
+            if (record.getEndTime() >= 0) {
+                methodContext.extendEndTimeRecursive(new Date(record.getEndTime()));
+            }
+            classContext.addMethodContext(methodContext);
+
+            // Same links as created by the RetryAnalyzer
+            if (previousRecord != null && record.isTestMethod() && record.isRetryOf(previousRecord)) {
+                previousMethodContext.addRelatedMethodContext(methodContext);
+                if (record.getStatus() == Status.RECOVERED) {
+                    methodContext.addDependsOnMethod(previousMethodContext);
+                }
+            }
+            previousRecord = record;
+            previousMethodContext = methodContext;
+        }
+
+        private static void extendStartTimeRecursive(AbstractContext context, Date date) {
+            context.setStartTime(date);
+            context = context.getParentContext();
+            while (context != null) {
+                if (context.getStartTime().after(date)) {
+                    context.setStartTime(date);
+                }
+                context = context.getParentContext();
+            }
+        }
+
+        private static Class<?> loadClass(String className) {
+            try {
+                return Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // The test classes are not required for merging
+                return Object.class;
+            }
+        }
+    }
+
+    private interface WriterFunction<T> {
+        T apply(BufferedWriter writer) throws IOException;
+    }
+
+    /**
+     * @param input An exported or merged file, or a report directory containing the {@link #FILE_NAME}
+     */
+    public ExecutionContextMerger addInput(Path input) {
+        inputs.add(Files.isDirectory(input) ? input.resolve(FILE_NAME) : input);
+        return this;
+    }
+
+    /**
+     * Merges the inputs and passes the merged records in {@link ContextRecord#ORDER} to the consumer
+     */
+    public Result merge(Consumer<ContextRecord> consumer) throws IOException {
+        Result result = new Result();
+        List<Cursor> cursors = new ArrayList<>();
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, inputs.size()), (a, b) -> ContextRecord.ORDER.compare(a.current, b.current));
+        try {
+            for (Path input : inputs) {
+                Cursor cursor = new Cursor(input);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            List<ContextRecord> attempts = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                ContextRecord record = cursor.current;
+                if (!attempts.isEmpty() && !attempts.get(0).getKey().equals(record.getKey())) {
+                    flush(attempts, result, consumer);
+                }
+                attempts.add(record);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            flush(attempts, result, consumer);
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        log().info("Merged " + inputs.size() + " inputs: " + result);
+        return result;
+    }
+
+    /**
+     * Merges the inputs into a new file, which can be merged again
+     */
+    public Result merge(Path output) throws IOException {
+        return writeAtomically(output, writer -> merge(record -> writeRecord(writer, record)));
+    }
+
+    /**
+     * Merges the inputs and creates the contexts in the given execution context.
+     * Other than {@link #merge(Consumer)}, this keeps all merged contexts in memory.
+     */
+    public Result merge(ExecutionContext executionContext) throws IOException {
+        return merge(new ContextBuilder(executionContext));
+    }
+
+    /**
+     * Links the retries of the invocations with the same key and passes them to the consumer
+     */
+    private static void flush(List<ContextRecord> attempts, Result result, Consumer<ContextRecord> consumer) {
+        boolean isTestMethod = attempts.get(0).isTestMethod();
+        boolean previousRetried = false;
+        int previousRetryCounter = 0;
+        for (int i = 0; i < attempts.size(); i++) {
+            ContextRecord attempt = attempts.get(i);
+            if (isTestMethod) {
+                boolean isRetry = (i > 0 && attempt.isRetryOf(attempts.get(i - 1)));
+                boolean isRetried = (i < attempts.size() - 1 && attempts.get(i + 1).isRetryOf(attempt));
+                Status status = attempt.getStatus();
+                int retryCounter = attempt.getRetryCounter();
+                if (isRetried && status == Status.FAILED) {
+                    status = Status.RETRIED;
+                } else if (!isRetried && status == Status.RETRIED) {
+                    // No further attempt has been executed
+                    status = Status.FAILED;
+                } else if (isRetry && previousRetried && status == Status.PASSED) {
+                    status = Status.RECOVERED;
+                }
+                if (isRetry) {
+                    retryCounter = Math.max(retryCounter, previousRetryCounter + 1);
+                }
+                if (status != attempt.getStatus() || retryCounter != attempt.getRetryCounter()) {
+                    attempt = attempt.withStatus(status, retryCounter);
+                    result.linkedRetryCount++;
+                }
+                previousRetried = (status == Status.RETRIED);
+                previousRetryCounter = retryCounter;
+            }
+            result.count(attempt);
+            consumer.accept(attempt);
+        }
+        attempts.clear();
+    }
+
+    /**
+     * Writes all method contexts of the execution context to a file, which can be merged
+     *
+     * @param shard Label of this execution, may be empty
+     */
+    public static void export(ExecutionContext executionContext, String shard, Path file) throws IOException {
+        List<ContextRecord> records = executionContext.readSuiteContexts()
+                .flatMap(SuiteContext::readTestContexts)
+                .flatMap(TestContext::readClassContexts)
+                .flatMap(ClassContext::readMethodContexts)
+                .map(methodContext -> ContextRecord.of(methodContext, shard))
+                .sorted(ContextRecord.ORDER)
+                .collect(Collectors.toList());
+        writeAtomically(file, writer -> {
+            for (ContextRecord record : records) {
+                writeRecord(writer, record);
+            }
+            return records.size();
+        });
+    }
+
+    private static void writeRecord(BufferedWriter writer, ContextRecord record) {
+        try {
+            writer.write(record.toLine());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T writeAtomically(Path file, WriterFunction<T> function) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tempFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            T result;
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                result = function.apply(writer);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Usage: &lt;output file&gt; &lt;input file or report directory&gt;...
+     */
+    public static void main(String[] args) throws IOException {
+        Logger logger = LoggerFactory.getLogger(ExecutionContextMerger.class);
+        if (args.length < 2) {
+            logger.error("Usage: " + ExecutionContextMerger.class.getName() + " <output file> <input file or report directory>...");
+            System.exit(1);
+        }
+        ExecutionContextMerger merger = new ExecutionContextMerger();
+        for (int i = 1; i < args.length; i++) {
+            merger.addInput(Paths.get(args[i]));
+        }
+        Result result = merger.merge(Paths.get(args[0]));
+        logger.info("Merged shards " + result.getShards() + " into " + args[0]);
+        logger.info("Failure corridor matched: " + result.isFailureCorridorMatched());
+    }
+}
@@ -76,6 +76,7 @@ public class MethodContext extends AbstractContext {
     private final List<MethodContext> dependsOnMethodContexts = new LinkedList<>();
     private List<CustomContext> customContexts;
     private List<Annotation> customAnnotations;
+    private final ResourceUsage resourceUsage = new ResourceUsage();
 
     /**
      * Public constructor. Creates a new <code>MethodContext</code> object.
@@ -354,4 +355,8 @@ public class MethodContext extends AbstractContext {
     public Optional<String> getPriorityMessage() {
         return Optional.ofNullable(priorityMessage);
     }
+
+    public ResourceUsage getResourceUsage() {
+        return resourceUsage;
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.model.context;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time, allocated bytes and wall time of a {@link MethodContext}, measured on the executing thread.
+ * Values are -1 when not measured or not supported by the JVM.
+ */
+public class ResourceUsage {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = getAllocationMXBean();
+
+    private boolean started = false;
+    private long startCpuTimeNanos = -1;
+    private long startAllocatedBytes = -1;
+    private long startWallTimeNanos = -1;
+    private long cpuTimeNanos = -1;
+    private long allocatedBytes = -1;
+    private long wallTimeNanos = -1;
+
+    private static com.sun.management.ThreadMXBean getAllocationMXBean() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    private static long currentCpuTimeNanos() {
+        return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentAllocatedBytes() {
+        return ALLOCATION_MX_BEAN != null ? ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Starts the measurement on the current thread
+     */
+    public void start() {
+        startWallTimeNanos = System.nanoTime();
+        startCpuTimeNanos = currentCpuTimeNanos();
+        startAllocatedBytes = currentAllocatedBytes();
+        started = true;
+    }
+
+    /**
+     * Stops the measurement, must be called on the same thread as {@link #start()}
+     */
+    public void stop() {
+        // System.nanoTime() may be negative, so it cannot tell whether the measurement has been started
+        if (!started) {
+            return;
+        }
+        started = false;
+        long allocated = currentAllocatedBytes();
+        long cpuTime = currentCpuTimeNanos();
+        wallTimeNanos = System.nanoTime() - startWallTimeNanos;
+        cpuTimeNanos = (cpuTime >= 0 && startCpuTimeNanos >= 0) ? cpuTime - startCpuTimeNanos : -1;
+        allocatedBytes = (allocated >= 0 && startAllocatedBytes >= 0) ? allocated - startAllocatedBytes : -1;
+    }
+
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+}
@@ -54,7 +54,7 @@ public class SuiteContext extends AbstractContext {
         return getTestContext(TesterraListener.getContextGenerator().getTestContextName(testContext));
     }
 
-    private synchronized TestContext getTestContext(String testContextName) {
+    synchronized TestContext getTestContext(String testContextName) {
         return getOrCreateContext(
                 testContexts,
                 testContextName,
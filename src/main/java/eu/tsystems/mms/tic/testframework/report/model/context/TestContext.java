@@ -56,7 +56,7 @@ public class TestContext extends AbstractContext {
 
     public ClassContext getClassContext(ITestResult testResult) {
         DefaultTestNGContextGenerator contextGenerator = TesterraListener.getContextGenerator();
-        return this.pGetClassContext(testResult.getTestClass(), contextGenerator.getClassContextName(testResult));
+        return this.pGetClassContext(testResult.getTestClass().getRealClass(), contextGenerator.getClassContextName(testResult));
     }
 
     /**
@@ -65,13 +65,10 @@ public class TestContext extends AbstractContext {
      */
     public ClassContext getClassContext(final ITestNGMethod iTestNgMethod) {
         final IClass testClass = iTestNgMethod.getTestClass();
-        return this.pGetClassContext(testClass, testClass.getRealClass().getSimpleName());
+        return this.pGetClassContext(testClass.getRealClass(), testClass.getRealClass().getSimpleName());
     }
 
-    private synchronized ClassContext pGetClassContext(IClass testClass, String classContextName) {
-
-        final Class<?> realClass = testClass.getRealClass();
-
+    synchronized ClassContext pGetClassContext(Class<?> realClass, String classContextName) {
         return getOrCreateContext(
                 this.classContexts,
                 classContextName,
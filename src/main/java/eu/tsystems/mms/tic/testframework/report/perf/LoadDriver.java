@@ -0,0 +1,288 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.perf;
+
+import eu.tsystems.mms.tic.testframework.internal.TimingInfo;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.utils.JVMUtils;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a scenario with a number of virtual users and records the results into the {@link PerfTestContainer}.
+ * Every virtual user runs on its own virtual thread when the JVM supports them, otherwise on a platform thread.
+ *
+ * The virtual users are started evenly distributed over the ramp up time, iterate during the steady state time
+ * and are stopped evenly distributed over the ramp down time. With a target rate, the iterations are paced
+ * to reach the given number of iterations per second for all virtual users together.
+ *
+ * <pre>
+ * new LoadDriver("checkout")
+ *      .setVirtualUsers(1000)
+ *      .setRampUp(Duration.ofMinutes(1))
+ *      .setSteadyState(Duration.ofMinutes(10))
+ *      .setTargetRate(500)
+ *      .run(virtualUser -> virtualUser.measure("open cart", () -> client.get("/cart")));
+ * </pre>
+ */
+public class LoadDriver implements Loggable {
+
+    /**
+     * A single iteration of a virtual user. Throwing an exception fails the transaction, errors stop the virtual user.
+     */
+    public interface Scenario {
+        void run(VirtualUser virtualUser) throws Exception;
+    }
+
+    /**
+     * State of a virtual user, confined to its thread
+     */
+    public static class VirtualUser {
+        private final int number;
+        private final String name;
+        private int repetition = 0;
+        private List<TimingInfo> timingInfos = new ArrayList<>();
+
+        private VirtualUser(int number, String name) {
+            this.number = number;
+            this.name = name;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The current iteration, starting with 1
+         */
+        public int getRepetition() {
+            return repetition;
+        }
+
+        /**
+         * Runs the callable and records its duration as test step
+         */
+        public <T> T measure(String testStep, Callable<T> callable) throws Exception {
+            long start = System.nanoTime();
+            try {
+                return callable.call();
+            } finally {
+                addTimingInfo(testStep, start);
+            }
+        }
+
+        /**
+         * Runs the runnable and records its duration as test step
+         */
+        public void measure(String testStep, Runnable runnable) {
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                addTimingInfo(testStep, start);
+            }
+        }
+
+        private void addTimingInfo(String testStep, long startInNanos) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startInNanos);
+            timingInfos.add(new TimingInfo(testStep, "", duration, System.currentTimeMillis()));
+        }
+    }
+
+    private final String scenarioName;
+    private int virtualUsers = 1;
+    private Duration rampUp = Duration.ZERO;
+    private Duration steadyState = Duration.ZERO;
+    private Duration rampDown = Duration.ZERO;
+    private double targetRate = 0;
+    private volatile boolean stopped = false;
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder failedIterations = new LongAdder();
+    private final AtomicReference<Error> error = new AtomicReference<>();
+
+    /**
+     * @param scenarioName Used as test name of the transactions
+     */
+    public LoadDriver(String scenarioName) {
+        this.scenarioName = scenarioName;
+    }
+
+    public LoadDriver setVirtualUsers(int virtualUsers) {
+        if (virtualUsers < 1) {
+            throw new IllegalArgumentException("At least one virtual user required: " + virtualUsers);
+        }
+        this.virtualUsers = virtualUsers;
+        return this;
+    }
+
+    public LoadDriver setRampUp(Duration rampUp) {
+        this.rampUp = rampUp;
+        return this;
+    }
+
+    public LoadDriver setSteadyState(Duration steadyState) {
+        this.steadyState = steadyState;
+        return this;
+    }
+
+    public LoadDriver setRampDown(Duration rampDown) {
+        this.rampDown = rampDown;
+        return this;
+    }
+
+    /**
+     * @param iterationsPerSecond Iterations per second of all virtual users together, 0 runs without pacing
+     */
+    public LoadDriver setTargetRate(double iterationsPerSecond) {
+        this.targetRate = iterationsPerSecond;
+        return this;
+    }
+
+    /**
+     * Stops all virtual users after their current iteration
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public long getIterations() {
+        return iterations.sum();
+    }
+
+    public long getFailedIterations() {
+        return failedIterations.sum();
+    }
+
+    /**
+     * Runs the scenario and blocks until all virtual users have finished.
+     *
+     * @throws IllegalStateException if neither ramp up, steady state nor ramp down time has been set
+     * @throws Error the first error thrown by a virtual user, which stops all virtual users
+     */
+    public void run(Scenario scenario) throws InterruptedException {
+        if (rampUp.isZero() && steadyState.isZero() && rampDown.isZero()) {
+            throw new IllegalStateException("No ramp up, steady state or ramp down time set for " + scenarioName);
+        }
+        if (rampUp.isNegative() || steadyState.isNegative() || rampDown.isNegative()) {
+            throw new IllegalStateException("Negative phase duration for " + scenarioName);
+        }
+        stopped = false;
+        error.set(null);
+        final long startInNanos = System.nanoTime();
+        final long rampUpInNanos = rampUp.toNanos();
+        final long steadyStateEndInNanos = rampUpInNanos + steadyState.toNanos();
+        final long rampDownInNanos = rampDown.toNanos();
+        final long pacingInNanos = targetRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * virtualUsers / targetRate) : 0;
+
+        PerfTestContainer.getMetrics().setStartTime(System.currentTimeMillis());
+        log().info("Starting " + virtualUsers + " virtual users for " + scenarioName);
+
+        ExecutorService executor = JVMUtils.createVirtualThreadPerTaskExecutor().orElseGet(Executors::newCachedThreadPool);
+        try {
+            for (int i = 0; i < virtualUsers; i++) {
+                final VirtualUser virtualUser = new VirtualUser(i + 1, scenarioName + "-VU" + (i + 1));
+                final long startOffset = rampUpInNanos * i / virtualUsers;
+                final long stopOffset = steadyStateEndInNanos + rampDownInNanos * (virtualUsers - i) / virtualUsers;
+                executor.execute(() -> runVirtualUser(scenario, virtualUser, startInNanos + startOffset, startInNanos + stopOffset, pacingInNanos));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log().debug("Waiting for virtual users of " + scenarioName);
+            }
+        } catch (InterruptedException e) {
+            stop();
+            executor.shutdownNow();
+            throw e;
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        log().info("Finished " + scenarioName + " with " + getIterations() + " iterations (" + getFailedIterations() + " failed)");
+    }
+
+    private void runVirtualUser(Scenario scenario, VirtualUser virtualUser, long startInNanos, long stopInNanos, long pacingInNanos) {
+        long threadId = Thread.currentThread().getId();
+        PerfTestContainer.saveThreadName(threadId, virtualUser.name);
+        try {
+            long nextIteration = startInNanos;
+            while (!stopped) {
+                sleepUntil(nextIteration - stopInNanos < 0 ? nextIteration : stopInNanos);
+                if (stopped || System.nanoTime() - stopInNanos >= 0) {
+                    break;
+                }
+                runIteration(scenario, virtualUser, threadId);
+
+                nextIteration += pacingInNanos;
+                // do not try to catch up iterations that could not be started in time
+                long now = System.nanoTime();
+                if (now - nextIteration > pacingInNanos) {
+                    nextIteration = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Error e) {
+            error.compareAndSet(null, e);
+            stop();
+        }
+    }
+
+    private void runIteration(Scenario scenario, VirtualUser virtualUser, long threadId) {
+        virtualUser.repetition++;
+        virtualUser.timingInfos = new ArrayList<>();
+        boolean passed = true;
+        long start = System.nanoTime();
+        try {
+            scenario.run(virtualUser);
+        } catch (Exception exception) {
+            passed = false;
+            failedIterations.increment();
+            log().debug(virtualUser.name + " iteration #" + virtualUser.repetition + " failed", exception);
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        iterations.increment();
+
+        PerfTestContainer.addPageLoadInfo(threadId, virtualUser.timingInfos, scenarioName);
+        PerfTestContainer.getMetrics().addTransaction(scenarioName, virtualUser.repetition, duration, passed, System.currentTimeMillis());
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
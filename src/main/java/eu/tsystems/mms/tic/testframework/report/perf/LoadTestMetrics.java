@@ -0,0 +1,439 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.perf;
+
+import eu.tsystems.mms.tic.testframework.internal.TimingInfo;
+import eu.tsystems.mms.tic.testframework.internal.utils.DurationHistogram;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Computes the {@link MetricType}s of a load test.
+ * Samples are recorded lock-free into striped recorders, a thread always writes into the same stripe.
+ * Throughput is counted in per-second buckets of the sample timestamps, coarser series are derived from them.
+ * The buckets are reported relative to the start time, or the first sample when no start time has been set.
+ */
+public class LoadTestMetrics {
+
+    /**
+     * Number of seconds per throughput chunk, chunks are allocated on demand
+     */
+    private static final int SECONDS_PER_CHUNK = 3600;
+
+    private final Recorder[] recorders;
+    private final ConcurrentMap<String, Integer> testStepOrder = new ConcurrentHashMap<>();
+    private final AtomicInteger testStepCounter = new AtomicInteger();
+    private final AtomicLong startTimeMillis = new AtomicLong(Long.MAX_VALUE);
+    private final Throughput requests = new Throughput();
+    private final Throughput transactions = new Throughput();
+
+    public LoadTestMetrics() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        recorders = new Recorder[stripes];
+        for (int i = 0; i < stripes; i++) {
+            recorders[i] = new Recorder();
+        }
+    }
+
+    /**
+     * Count, sum, min and max of durations
+     */
+    private static class Aggregate {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private void add(long value) {
+            count.increment();
+            sum.add(value);
+            min.accumulateAndGet(value, Math::min);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        private void merge(Aggregate other) {
+            count.add(other.count.sum());
+            sum.add(other.sum.sum());
+            min.accumulateAndGet(other.min.get(), Math::min);
+            max.accumulateAndGet(other.max.get(), Math::max);
+        }
+
+        private long getAverage() {
+            long c = count.sum();
+            return c == 0 ? 0 : sum.sum() / c;
+        }
+    }
+
+    /**
+     * Samples of a subset of threads
+     */
+    private static class Recorder {
+        private final ConcurrentMap<String, DurationHistogram> testSteps = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, DurationHistogram> tests = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Integer, Aggregate> repetitions = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Integer, ConcurrentMap<String, Aggregate>> testStepsPerRepetition = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> passedTransactions = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> failedTransactions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Per-second counters by epoch second, allocated in chunks of {@link #SECONDS_PER_CHUNK}
+     */
+    private static class Throughput {
+        private final ConcurrentMap<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+
+        private void increment(long epochSecond) {
+            long chunkIndex = Math.floorDiv(epochSecond, SECONDS_PER_CHUNK);
+            AtomicLongArray chunk = chunks.get(chunkIndex);
+            if (chunk == null) {
+                chunk = chunks.computeIfAbsent(chunkIndex, key -> new AtomicLongArray(SECONDS_PER_CHUNK));
+            }
+            chunk.incrementAndGet((int) (epochSecond - chunkIndex * SECONDS_PER_CHUNK));
+        }
+
+        /**
+         * @return The epoch second of the first sample, {@link Long#MAX_VALUE} without samples
+         */
+        private long getFirstSecond() {
+            long firstSecond = Long.MAX_VALUE;
+            for (Map.Entry<Long, AtomicLongArray> entry : chunks.entrySet()) {
+                AtomicLongArray chunk = entry.getValue();
+                for (int i = 0; i < SECONDS_PER_CHUNK; i++) {
+                    if (chunk.get(i) > 0) {
+                        firstSecond = Math.min(firstSecond, entry.getKey() * SECONDS_PER_CHUNK + i);
+                        break;
+                    }
+                }
+            }
+            return firstSecond;
+        }
+
+        /**
+         * @param startSecond Epoch second of bucket 0, not after the first sample
+         * @return Counts per bucket start in seconds since the start, empty buckets between the start and the last sample are included
+         */
+        private Map<Long, Long> getCounts(long bucketSizeInSeconds, long startSecond) {
+            Map<Long, Long> counts = new TreeMap<>();
+            long lastSecond = -1;
+            for (Map.Entry<Long, AtomicLongArray> entry : new TreeMap<>(chunks).entrySet()) {
+                AtomicLongArray chunk = entry.getValue();
+                for (int i = 0; i < SECONDS_PER_CHUNK; i++) {
+                    long count = chunk.get(i);
+                    if (count > 0) {
+                        long second = entry.getKey() * SECONDS_PER_CHUNK + i - startSecond;
+                        counts.merge(second - second % bucketSizeInSeconds, count, Long::sum);
+                        lastSecond = second;
+                    }
+                }
+            }
+            for (long bucket = 0; bucket <= lastSecond; bucket += bucketSizeInSeconds) {
+                counts.putIfAbsent(bucket, 0L);
+            }
+            return counts;
+        }
+    }
+
+    private Recorder getRecorder() {
+        return recorders[(int) (Thread.currentThread().getId() & (recorders.length - 1))];
+    }
+
+    /**
+     * @return Epoch second of bucket 0, samples before the start time move it earlier
+     */
+    private long getStartSecond() {
+        long startSecond = Math.min(requests.getFirstSecond(), transactions.getFirstSecond());
+        long start = startTimeMillis.get();
+        if (start != Long.MAX_VALUE) {
+            startSecond = Math.min(startSecond, Math.floorDiv(start, 1000L));
+        }
+        return startSecond;
+    }
+
+    /**
+     * Sets the reference time of the throughput buckets, otherwise the first sample is used.
+     * It may be set at any time, the buckets are aligned when the metrics are calculated.
+     */
+    public void setStartTime(long startTimeMillis) {
+        this.startTimeMillis.set(startTimeMillis);
+    }
+
+    /**
+     * Records the response time of a single request (test step)
+     *
+     * @param testStep Name of the test step
+     * @param repetition Number of the test repetition of the virtual user, starting with 1
+     * @param responseTimeMillis Response time
+     * @param timestampMillis End of the request
+     */
+    public void addRequest(String testStep, int repetition, long responseTimeMillis, long timestampMillis) {
+        Recorder recorder = getRecorder();
+        testStepOrder.computeIfAbsent(testStep, key -> testStepCounter.incrementAndGet());
+        recorder.testSteps.computeIfAbsent(testStep, key -> new DurationHistogram()).record(responseTimeMillis);
+        recorder.testStepsPerRepetition
+                .computeIfAbsent(repetition, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(testStep, key -> new Aggregate())
+                .add(responseTimeMillis);
+        requests.increment(Math.floorDiv(timestampMillis, 1000L));
+    }
+
+    public void addRequest(TimingInfo timingInfo, int repetition) {
+        addRequest(timingInfo.getContext(), repetition, timingInfo.getLoadDuration(), timingInfo.getTimeStamp());
+    }
+
+    /**
+     * Records a whole test repetition (transaction)
+     *
+     * @param testName Name of the test method
+     * @param repetition Number of the test repetition of the virtual user, starting with 1
+     * @param durationMillis Duration of the whole transaction
+     * @param passed Transaction status
+     * @param timestampMillis End of the transaction
+     */
+    public void addTransaction(String testName, int repetition, long durationMillis, boolean passed, long timestampMillis) {
+        Recorder recorder = getRecorder();
+        recorder.tests.computeIfAbsent(testName, key -> new DurationHistogram()).record(durationMillis);
+        recorder.repetitions.computeIfAbsent(repetition, key -> new Aggregate()).add(durationMillis);
+        (passed ? recorder.passedTransactions : recorder.failedTransactions)
+                .computeIfAbsent(testName, key -> new LongAdder())
+                .increment();
+        transactions.increment(Math.floorDiv(timestampMillis, 1000L));
+    }
+
+    private <K, V> Map<K, V> mergeRecorders(Function<Recorder, Map<K, V>> mapFunction, Supplier<V> valueSupplier, BiConsumer<V, V> merger) {
+        Map<K, V> merged = new LinkedHashMap<>();
+        for (Recorder recorder : recorders) {
+            mapFunction.apply(recorder).forEach((key, value) -> merger.accept(merged.computeIfAbsent(key, k -> valueSupplier.get()), value));
+        }
+        return merged;
+    }
+
+    private Map<String, DurationHistogram> getTestStepHistograms() {
+        Map<String, DurationHistogram> merged = mergeRecorders(recorder -> recorder.testSteps, DurationHistogram::new, DurationHistogram::merge);
+        Map<String, DurationHistogram> ordered = new LinkedHashMap<>();
+        merged.keySet().stream()
+                .sorted(Comparator.comparing(testStep -> testStepOrder.getOrDefault(testStep, Integer.MAX_VALUE)))
+                .forEach(testStep -> ordered.put(testStep, merged.get(testStep)));
+        return ordered;
+    }
+
+    private static Map<String, Number> histogramColumns(DurationHistogram histogram) {
+        Map<String, Number> columns = new LinkedHashMap<>();
+        columns.put("count", histogram.getCount());
+        columns.put("min", histogram.getMin());
+        columns.put("avg", histogram.getAverage());
+        columns.put("p50", histogram.getValueAtPercentile(50));
+        columns.put("p90", histogram.getValueAtPercentile(90));
+        columns.put("p99", histogram.getValueAtPercentile(99));
+        columns.put("max", histogram.getMax());
+        return columns;
+    }
+
+    private static Map<String, Number> singleColumn(String column, Number value) {
+        Map<String, Number> columns = new LinkedHashMap<>();
+        columns.put(column, value);
+        return columns;
+    }
+
+    private static Map<String, Map<String, Number>> throughputRows(Map<Long, Long> counts) {
+        Map<String, Map<String, Number>> rows = new LinkedHashMap<>();
+        counts.forEach((second, count) -> rows.put(String.valueOf(second), singleColumn("count", count)));
+        return rows;
+    }
+
+    private Map<String, Map<String, Number>> repetitionRows(Function<Aggregate, Number> valueFunction, String column) {
+        Map<Integer, Aggregate> merged = new TreeMap<>(mergeRecorders(recorder -> recorder.repetitions, Aggregate::new, Aggregate::merge));
+        Map<String, Map<String, Number>> rows = new LinkedHashMap<>();
+        merged.forEach((repetition, aggregate) -> rows.put(String.valueOf(repetition), singleColumn(column, valueFunction.apply(aggregate))));
+        return rows;
+    }
+
+    /**
+     * Calculates the metric from all samples recorded so far.
+     *
+     * @return Rows of columns, for throughput metrics the rows are the bucket start in seconds since the start time
+     */
+    public Map<String, Map<String, Number>> calculate(MetricType metricType) {
+        Map<String, Map<String, Number>> rows = new LinkedHashMap<>();
+        switch (metricType) {
+            case AVERAGE_RESPONSETIMES_PER_TESTSTEP:
+                getTestStepHistograms().forEach((testStep, histogram) -> rows.put(testStep, singleColumn("avg", histogram.getAverage())));
+                break;
+            case MAX_RESPONSETIME_PER_TESTSTEP:
+                getTestStepHistograms().forEach((testStep, histogram) -> rows.put(testStep, singleColumn("max", histogram.getMax())));
+                break;
+            case MIN_RESPONSETIME_PER_TESTSTEP:
+                getTestStepHistograms().forEach((testStep, histogram) -> rows.put(testStep, singleColumn("min", histogram.getMin())));
+                break;
+            case STACKED_RESPONSETIMES_PER_TESTSTEP:
+                long stacked = 0;
+                for (Map.Entry<String, DurationHistogram> entry : getTestStepHistograms().entrySet()) {
+                    long avg = entry.getValue().getAverage();
+                    stacked += avg;
+                    Map<String, Number> columns = singleColumn("avg", avg);
+                    columns.put("stacked", stacked);
+                    rows.put(entry.getKey(), columns);
+                }
+                break;
+            case AVERAGE_RESPONSETIMES_PER_REPETITION:
+                return repetitionRows(Aggregate::getAverage, "avg");
+            case MAX_RESPONSETIME_PER_REPETITION:
+                return repetitionRows(aggregate -> aggregate.max.get(), "max");
+            case MIN_RESPONSETIME_PER_REPETITION:
+                return repetitionRows(aggregate -> aggregate.min.get(), "min");
+            case LAYERED_RESPONSETIMES_PER_REPETITION:
+                Map<Integer, Map<String, Aggregate>> perRepetition = new TreeMap<>();
+                for (Recorder recorder : recorders) {
+                    recorder.testStepsPerRepetition.forEach((repetition, testSteps) -> {
+                        Map<String, Aggregate> merged = perRepetition.computeIfAbsent(repetition, key -> new LinkedHashMap<>());
+                        testSteps.forEach((testStep, aggregate) -> merged.computeIfAbsent(testStep, key -> new Aggregate()).merge(aggregate));
+                    });
+                }
+                List<String> testSteps = new ArrayList<>(getTestStepHistograms().keySet());
+                perRepetition.forEach((repetition, aggregates) -> {
+                    Map<String, Number> columns = new LinkedHashMap<>();
+                    testSteps.forEach(testStep -> {
+                        Aggregate aggregate = aggregates.get(testStep);
+                        columns.put(testStep, aggregate == null ? 0 : aggregate.getAverage());
+                    });
+                    rows.put(String.valueOf(repetition), columns);
+                });
+                break;
+            case TRANSACTION_STATUS:
+                Map<String, LongAdder> passed = mergeRecorders(recorder -> recorder.passedTransactions, LongAdder::new, (a, b) -> a.add(b.sum()));
+                Map<String, LongAdder> failed = mergeRecorders(recorder -> recorder.failedTransactions, LongAdder::new, (a, b) -> a.add(b.sum()));
+                Map<String, Boolean> testNames = new TreeMap<>();
+                passed.keySet().forEach(testName -> testNames.put(testName, true));
+                failed.keySet().forEach(testName -> testNames.put(testName, true));
+                testNames.keySet().forEach(testName -> {
+                    Map<String, Number> columns = new LinkedHashMap<>();
+                    columns.put("passed", passed.containsKey(testName) ? passed.get(testName).sum() : 0);
+                    columns.put("failed", failed.containsKey(testName) ? failed.get(testName).sum() : 0);
+                    rows.put(testName, columns);
+                });
+                break;
+            case RESPONSETIMES_PER_TEST:
+                new TreeMap<>(mergeRecorders(recorder -> recorder.tests, DurationHistogram::new, DurationHistogram::merge))
+                        .forEach((testName, histogram) -> rows.put(testName, histogramColumns(histogram)));
+                break;
+            case RESPONSETIMES_PER_TESTSTEP:
+                getTestStepHistograms().forEach((testStep, histogram) -> rows.put(testStep, histogramColumns(histogram)));
+                break;
+            case REQUESTS_PER_SECOND:
+                return throughputRows(requests.getCounts(1, getStartSecond()));
+            case REQUESTS_PER_MINUTE:
+                return throughputRows(requests.getCounts(60, getStartSecond()));
+            case REQUESTS_PER_HOUR:
+                return throughputRows(requests.getCounts(3600, getStartSecond()));
+            case TRANSACTIONS_PER_SECOND:
+                return throughputRows(transactions.getCounts(1, getStartSecond()));
+            case TRANSACTIONS_PER_MINUTE:
+                return throughputRows(transactions.getCounts(60, getStartSecond()));
+            case TRANSACTIONS_PER_HOUR:
+                return throughputRows(transactions.getCounts(3600, getStartSecond()));
+        }
+        return rows;
+    }
+
+    /**
+     * Writes all metrics as CSV with the columns metric, row, column, value
+     */
+    public void writeCsv(File file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("metric,row,column,value");
+            writer.newLine();
+            for (MetricType metricType : MetricType.values()) {
+                for (Map.Entry<String, Map<String, Number>> row : calculate(metricType).entrySet()) {
+                    for (Map.Entry<String, Number> column : row.getValue().entrySet()) {
+                        writer.write(metricType.name() + "," + csvValue(row.getKey()) + "," + csvValue(column.getKey()) + "," + (column.getValue() == null ? "" : column.getValue()));
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all metrics as JSON object of metric, row and column
+     */
+    public void writeJson(File file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{");
+            String metricSeparator = "";
+            for (MetricType metricType : MetricType.values()) {
+                writer.write(metricSeparator + "\n  " + jsonString(metricType.name()) + ": {");
+                String rowSeparator = "";
+                for (Map.Entry<String, Map<String, Number>> row : calculate(metricType).entrySet()) {
+                    writer.write(rowSeparator + "\n    " + jsonString(row.getKey()) + ": {");
+                    String columnSeparator = "";
+                    for (Map.Entry<String, Number> column : row.getValue().entrySet()) {
+                        writer.write(columnSeparator + jsonString(column.getKey()) + ": " + column.getValue());
+                        columnSeparator = ", ";
+                    }
+                    writer.write("}");
+                    rowSeparator = ",";
+                }
+                writer.write(rowSeparator.isEmpty() ? "}" : "\n  }");
+                metricSeparator = ",";
+            }
+            writer.write("\n}\n");
+        }
+    }
+
+    private static String csvValue(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -25,12 +25,14 @@ import eu.tsystems.mms.tic.testframework.internal.TimingInfo;
 import org.testng.ITestContext;
 import org.testng.ITestResult;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class PerfTestContainer {
 
@@ -40,19 +42,27 @@ public final class PerfTestContainer {
     /**
      * contains all measurements of all Thread of all Testmethods; it's used for csv-generation
      */
-    private static final Map<String, Map<Long, List<TimingInfo>>> PAGE_LOAD_INFOS_PER_TEST_METHOD =
-            Collections.synchronizedMap(new HashMap<String, Map<Long, List<TimingInfo>>>());
+    private static final Map<String, Map<Long, List<TimingInfo>>> PAGE_LOAD_INFOS_PER_TEST_METHOD = new ConcurrentHashMap<>();
 
     /**
      * save ITestResult for each Thread
      */
-    private static final Map<Long, ITestResult> TEST_RESULT_INFOS = Collections.synchronizedMap(
-            new HashMap<Long, ITestResult>());
+    private static final Map<Long, ITestResult> TEST_RESULT_INFOS = new ConcurrentHashMap<>();
 
     /**
      * save the VU to each Thread
      */
-    private static final Map<Long, String> THREAD_NAMES = Collections.synchronizedMap(new HashMap<Long, String>());
+    private static final Map<Long, String> THREAD_NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * counts the repetitions of each test method per Thread
+     */
+    private static final Map<String, AtomicInteger> REPETITIONS = new ConcurrentHashMap<>();
+
+    /**
+     * metrics of all page load infos
+     */
+    private static final LoadTestMetrics METRICS = new LoadTestMetrics();
 
     /**
      * ITestContext of the whole test
@@ -68,16 +78,19 @@ public final class PerfTestContainer {
      */
     public static void addPageLoadInfo(Long threadID, List<TimingInfo> timingInfos, String testMethodName) {
         // add the pageLoadInfo in a map with test method name as key
-        if (!PAGE_LOAD_INFOS_PER_TEST_METHOD.containsKey(testMethodName)) {
-
-            Map<Long, List<TimingInfo>> map = Collections.synchronizedMap(new HashMap<Long, List<TimingInfo>>());
-            map.put(threadID, timingInfos);
-            PAGE_LOAD_INFOS_PER_TEST_METHOD.put(testMethodName, map);
-        } else {
-            Map<Long, List<TimingInfo>> map = PAGE_LOAD_INFOS_PER_TEST_METHOD.get(testMethodName);
-            map.put(threadID, timingInfos);
-            PAGE_LOAD_INFOS_PER_TEST_METHOD.put(testMethodName, map);
-        }
+        PAGE_LOAD_INFOS_PER_TEST_METHOD
+                .computeIfAbsent(testMethodName, key -> new ConcurrentHashMap<>())
+                .put(threadID, timingInfos);
+
+        int repetition = REPETITIONS.computeIfAbsent(testMethodName + "#" + threadID, key -> new AtomicInteger()).incrementAndGet();
+        timingInfos.forEach(timingInfo -> METRICS.addRequest(timingInfo, repetition));
+    }
+
+    /**
+     * @return the metrics of all page load infos and transactions
+     */
+    public static LoadTestMetrics getMetrics() {
+        return METRICS;
     }
 //
 //    /**
@@ -154,26 +167,17 @@ public final class PerfTestContainer {
         return  vuSet;
     }
 
-//    public static void genereateReport() {
-//        // holds the pageLoadInfos of each thread of one specific testmethod
-//        Map<String, Map<Long, List<TimingInfo>>> pageLoadInfosPerTestMethod = PerfTestContainer
-//                .getPageLoadInfosPerTestMethod();
-//
-//        // generate folders
-//        PerfTestReportUtils.setOutputFolderName();
-//
-//        // holds pageLoadInfos of all threads: thread id maps to list of pageLoadInfos
-//        Map<Long, List<TimingInfo>> pageLoadInfos = PerfTestReportUtils
-//                .createPageLoadInfosOfAllThreads(pageLoadInfosPerTestMethod);
-//
-//        // just CSV, because it it can use all PageLoadInfos of all TestMethods
-//        PerfTestReportUtils.processLoadTestDataForCSV(pageLoadInfos);
-//
-//        // Graphs need to be generated per Testmethod, therefore a different Map is used
-//        PerfTestReportUtils.processLoadTestDataForGraphs(pageLoadInfosPerTestMethod);
-//
-//        // save configs of PerfTest in a csv-file
-//        PerfTestReportUtils.saveTestConfigs();
-//    }
+    /**
+     * writes all {@link MetricType}s as metrics.csv and metrics.json to the given directory
+     *
+     * @param directory .
+     */
+    public static void generateReport(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        METRICS.writeCsv(new File(directory, "metrics.csv"));
+        METRICS.writeJson(new File(directory, "metrics.json"));
+    }
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.report.perf;
+
+import com.google.common.eventbus.Subscribe;
+import eu.tsystems.mms.tic.testframework.events.FinalizeExecutionEvent;
+import eu.tsystems.mms.tic.testframework.logging.Loggable;
+import eu.tsystems.mms.tic.testframework.report.TesterraListener;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exports the load test metrics to the report when the execution has been finalized.
+ */
+public class PerfTestReportWorker implements FinalizeExecutionEvent.Listener, Loggable {
+
+    public static final String PERF_FOLDER_NAME = "perf";
+
+    @Override
+    @Subscribe
+    public void onFinalizeExecution(FinalizeExecutionEvent event) {
+        File directory = TesterraListener.getReport().getReportDirectory(PERF_FOLDER_NAME);
+        try {
+            PerfTestContainer.generateReport(directory);
+            log().info("Load test metrics written to " + directory.getAbsolutePath());
+        } catch (IOException e) {
+            log().error("Could not write load test metrics", e);
+        }
+    }
+}
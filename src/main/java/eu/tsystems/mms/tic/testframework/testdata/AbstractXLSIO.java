@@ -22,13 +22,11 @@
  package eu.tsystems.mms.tic.testframework.testdata;
 
 import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import java.util.function.Supplier;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
@@ -36,7 +34,6 @@ import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,16 +41,28 @@ public abstract class AbstractXLSIO {
 
     /** Default logger */
     protected static final Logger LOGGER = LoggerFactory.getLogger(XLSTestDataReader.class);
-    /** Workbook object for xls(x) file */
+    /** Workbook object for xls(x) file, opened lazily by {@link #getWorkbook()} after reading through the sheet cache */
     protected Workbook workbook;
     /** Excel formular evaluator. */
     protected FormulaEvaluator formulaEvaluator;
-    /** Object representing sheet to read */
+    /** Object representing sheet to read, opened lazily by {@link #getSheet()} after reading through the sheet cache */
     protected Sheet sheet;
+    /** Opens the sheet last read through the {@link XLSSheetCache}, NULL when the fields are up to date */
+    private Supplier<XLSSession> lastSource;
 
     /** sdf for reading dates */
-    private SimpleDateFormat simpleDateFormat = new SimpleDateFormat("dd.MM.yyyy");
+    private volatile SimpleDateFormat simpleDateFormat = new SimpleDateFormat("dd.MM.yyyy");
+    /** Thread confined copies of the sdf */
+    private volatile ThreadLocal<SimpleDateFormat> threadDateFormat = createThreadDateFormat(simpleDateFormat);
+    /** Thread confined formatters for numeric and formula cells */
+    private static final ThreadLocal<DataFormatter> DATA_FORMATTER = ThreadLocal.withInitial(DataFormatter::new);
+    /** Evaluator of the session the current thread is formatting, overrides {@link #formulaEvaluator} */
+    private static final ThreadLocal<FormulaEvaluator> SESSION_EVALUATOR = new ThreadLocal<>();
 
+    /**
+     * @deprecated Files are locked per file while reading and writing
+     */
+    @Deprecated
     protected static final Object LOCK = new Object();
 
     /**
@@ -89,7 +98,7 @@ public abstract class AbstractXLSIO {
             if (DateUtil.isCellDateFormatted(cell)) {
                 // if this is a date cell
                 Date date = cell.getDateCellValue();
-                return simpleDateFormat.format(date);
+                return threadDateFormat.get().format(date);
             }
 
             return getCellValue(cell);
@@ -112,10 +121,10 @@ public abstract class AbstractXLSIO {
         String cellValue;
 
         if (dataFormatString != null) {
-            DataFormatter dataFormatter = new DataFormatter();
+            DataFormatter dataFormatter = DATA_FORMATTER.get();
             if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
                 LOGGER.debug(logPrefix + "Found formula: " + cell.getCellFormula());
-                cellValue = dataFormatter.formatCellValue(cell, formulaEvaluator);
+                cellValue = dataFormatter.formatCellValue(cell, getFormulaEvaluator());
             }
             else {
                 cellValue = dataFormatter.formatCellValue(cell);
@@ -175,28 +184,8 @@ public abstract class AbstractXLSIO {
      */
     protected XLSWriter openFileFromResource(final String fileInResources, final String sheetName) {
         LOGGER.info("Reading from " + fileInResources);
-        synchronized (LOCK) {
-            InputStream resourceAsStream = Thread.currentThread().getContextClassLoader()
-                    .getResourceAsStream(fileInResources);
-
-            if (resourceAsStream == null) {
-                throw new SystemException("Error reading resource file " + fileInResources);
-            }
-
-            try {
-                workbook = WorkbookFactory.create(resourceAsStream);
-            } catch (IOException e) {
-                throw new SystemException("Cannot read xls(x) file: " + fileInResources, e);
-            } catch (InvalidFormatException e) {
-                throw new SystemException("Cannot read xls(x) file: " + fileInResources, e);
-            }
-            // Get data sheet by name
-            sheet = workbook.getSheet(sheetName);
-            if (sheet == null) {
-                throw new SystemException("No sheet with name " + sheetName + " found.");
-            }
-            return null;
-        }
+        setSession(XLSSession.openResource(fileInResources, sheetName));
+        return null;
     }
 
     /**
@@ -210,22 +199,53 @@ public abstract class AbstractXLSIO {
      */
     protected XLSWriter openFileAbsolute(final String filename, final String sheetName) {
         LOGGER.info("Reading from " + filename);
-        synchronized (LOCK) {
-            try {
-                FileInputStream fileInputStream = new FileInputStream(filename);
-                workbook = WorkbookFactory.create(fileInputStream);
-            } catch (IOException e) {
-                throw new SystemException("Cannot read xls(x) file: " + filename, e);
-            } catch (InvalidFormatException e) {
-                throw new SystemException("Cannot read xls(x) file: " + filename, e);
-            }
-            // Get data sheet by name
-            sheet = workbook.getSheet(sheetName);
-            if (sheet == null) {
-                throw new SystemException("No sheet with name " + sheetName + " found.");
+        setSession(XLSSession.open(new File(filename), sheetName));
+        return null;
+    }
+
+    /**
+     * Formats the cells of the given session on the current thread,
+     * while {@link #getStringCellValue(Cell)} and {@link #getCellValue(Cell)} remain the override points.
+     */
+    <T> T formatInSession(final XLSSession session, final Supplier<T> formatter) {
+        FormulaEvaluator previous = SESSION_EVALUATOR.get();
+        SESSION_EVALUATOR.set(session.getFormulaEvaluator());
+        try {
+            return formatter.get();
+        } finally {
+            if (previous == null) {
+                SESSION_EVALUATOR.remove();
+            } else {
+                SESSION_EVALUATOR.set(previous);
             }
+        }
+    }
 
-            return null;
+    private FormulaEvaluator getFormulaEvaluator() {
+        FormulaEvaluator sessionEvaluator = SESSION_EVALUATOR.get();
+        return sessionEvaluator != null ? sessionEvaluator : formulaEvaluator;
+    }
+
+    private synchronized void setSession(final XLSSession session) {
+        lastSource = null;
+        workbook = session.getWorkbook();
+        sheet = session.getSheet();
+        formulaEvaluator = session.getFormulaEvaluator();
+    }
+
+    /**
+     * Remembers the sheet read through the {@link XLSSheetCache}, which is only opened again when requested
+     */
+    synchronized void setLastSource(final Supplier<XLSSession> opener) {
+        lastSource = opener;
+        workbook = null;
+        sheet = null;
+        formulaEvaluator = null;
+    }
+
+    private synchronized void openLastSource() {
+        if (lastSource != null) {
+            setSession(lastSource.get());
         }
     }
 
@@ -264,13 +284,26 @@ public abstract class AbstractXLSIO {
 
     public void setSimpleDateFormat(SimpleDateFormat simpleDateFormat) {
         this.simpleDateFormat = simpleDateFormat;
+        this.threadDateFormat = createThreadDateFormat(simpleDateFormat);
+    }
+
+    private static ThreadLocal<SimpleDateFormat> createThreadDateFormat(final SimpleDateFormat simpleDateFormat) {
+        return ThreadLocal.withInitial(() -> (SimpleDateFormat) simpleDateFormat.clone());
     }
 
+    /**
+     * @return The sheet opened or read last, sheets read from the cache are opened again on first call
+     */
     public Sheet getSheet() {
+        openLastSource();
         return sheet;
     }
 
+    /**
+     * @return The workbook opened or read last, workbooks read from the cache are opened again on first call
+     */
     public Workbook getWorkbook() {
+        openLastSource();
         return workbook;
     }
 }
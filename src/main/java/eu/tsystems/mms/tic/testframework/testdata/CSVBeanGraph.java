@@ -0,0 +1,134 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Resolves nested beans of a CSV bean load from the CSV files named like their types, e.g. <code>Address.csv</code>.
+ * Every referenced file is read once and indexed, every referenced bean is created once,
+ * so shared references point to the same bean and cyclic references are resolved.
+ * A graph belongs to a single load and is not thread-safe.
+ */
+final class CSVBeanGraph {
+
+    /**
+     * A referenced CSV file with an index of its values
+     */
+    private static final class Table {
+        private final String fileInResources;
+        private final String[] header;
+        private final List<String[]> rows;
+        private final Map<String, Integer> index = new HashMap<>();
+
+        private Table(String fileInResources, List<String[]> lines) {
+            this.fileInResources = fileInResources;
+            this.header = lines.isEmpty() ? new String[0] : lines.get(0);
+            this.rows = lines.isEmpty() ? lines : lines.subList(1, lines.size());
+            // a line is identified by any of its values, the first line wins
+            for (int row = 0; row < rows.size(); row++) {
+                for (String value : rows.get(row)) {
+                    index.putIfAbsent(value, row);
+                }
+            }
+        }
+
+        private String[] find(String identifier) {
+            Integer row = index.get(identifier);
+            if (row == null) {
+                throw new RuntimeException(String.format("No line with identifier '%s' found in %s", identifier, fileInResources));
+            }
+            return rows.get(row);
+        }
+    }
+
+    private final CSVTestDataReader reader;
+    private final Map<Class<?>, Table> tables = new HashMap<>();
+    private final Map<Class<?>, Map<String, Object>> beans = new HashMap<>();
+
+    CSVBeanGraph(CSVTestDataReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return The value of the given type for the CSV value
+     */
+    Object resolve(Class<?> type, String value) {
+        /* enums, primitives and types with a String constructor */
+        final Function<String, Object> converter = CSVBeanMapping.getConverter(type);
+        if (converter != null) {
+            return converter.apply(value);
+        }
+
+        Map<String, Object> resolvedBeans = beans.get(type);
+        if (resolvedBeans == null) {
+            resolvedBeans = new HashMap<>();
+            beans.put(type, resolvedBeans);
+        }
+        Object bean = resolvedBeans.get(value);
+        if (bean == null) {
+            bean = createBean(type, value, resolvedBeans);
+        }
+        return bean;
+    }
+
+    private <T> T createBean(Class<T> type, String identifier, Map<String, Object> resolvedBeans) {
+        Table table = getTable(type);
+        if (table == null) {
+            /* create empty object with default constructor */
+            try {
+                T bean = type.newInstance();
+                resolvedBeans.put(identifier, bean);
+                return bean;
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        String[] line = table.find(identifier);
+        CSVBeanMapping<T> mapping = CSVBeanMapping.get(type, table.header);
+        T bean = mapping.newInstance();
+        // registered before populating to resolve cyclic references
+        resolvedBeans.put(identifier, bean);
+        mapping.populate(bean, line, this::resolve);
+        return bean;
+    }
+
+    /**
+     * @return The indexed CSV file of the type, NULL if there is none
+     */
+    private Table getTable(Class<?> type) {
+        if (tables.containsKey(type)) {
+            return tables.get(type);
+        }
+        Table table = null;
+        String path = reader.findFileInResources(type.getSimpleName() + ".csv");
+        if (path != null) {
+            table = new Table(path, reader.readAllLinesFromCsvFile(path));
+        }
+        tables.put(type, table);
+        return table;
+    }
+}
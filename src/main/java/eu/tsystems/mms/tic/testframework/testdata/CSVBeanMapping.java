@@ -0,0 +1,239 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Compiled mapping of CSV columns to bean properties, created once per bean class and header.
+ * Setters and converters are resolved to {@link MethodHandle}s, so creating a bean needs no reflection lookups.
+ */
+final class CSVBeanMapping<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ConcurrentMap<Key, CSVBeanMapping<?>> MAPPINGS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, Optional<Function<String, Object>>> CONVERTERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    static {
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(double.class, Double.class);
+    }
+
+    private static final class Key {
+        private final Class<?> beanClass;
+        private final List<String> header;
+
+        private Key(Class<?> beanClass, List<String> header) {
+            this.beanClass = beanClass;
+            this.header = header;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return beanClass.equals(key.beanClass) && header.equals(key.header);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(beanClass, header);
+        }
+    }
+
+    private static final class Column {
+        private final Class<?> type;
+        private final MethodHandle setter;
+        /**
+         * NULL for nested beans
+         */
+        private final Function<String, Object> converter;
+
+        private Column(Class<?> type, MethodHandle setter) {
+            this.type = type;
+            this.setter = setter;
+            this.converter = getConverter(type);
+        }
+    }
+
+    private final Class<T> beanClass;
+    private final MethodHandle constructor;
+    private final Column[] columns;
+
+    private CSVBeanMapping(Class<T> beanClass, String[] header) {
+        this.beanClass = beanClass;
+        try {
+            this.constructor = LOOKUP.findConstructor(beanClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        Map<String, PropertyDescriptor> properties = new HashMap<>();
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+            for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                properties.putIfAbsent(descriptor.getDisplayName(), descriptor);
+            }
+        } catch (IntrospectionException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.columns = new Column[header.length];
+        for (int col = 0; col < header.length; col++) {
+            final String headerName = header[col];
+            PropertyDescriptor descriptor = properties.get(headerName);
+            if (descriptor == null || descriptor.getWriteMethod() == null) {
+                throw new RuntimeException(String.format("No property with name %s found", headerName));
+            }
+            try {
+                MethodHandle setter = LOOKUP.unreflect(descriptor.getWriteMethod()).asType(SETTER_TYPE);
+                columns[col] = new Column(descriptor.getPropertyType(), setter);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * @return The cached mapping of the given bean class and header
+     */
+    @SuppressWarnings("unchecked")
+    static <T> CSVBeanMapping<T> get(Class<T> beanClass, String[] header) {
+        Key key = new Key(beanClass, Arrays.asList(header.clone()));
+        return (CSVBeanMapping<T>) MAPPINGS.computeIfAbsent(key, k -> new CSVBeanMapping<>(beanClass, header));
+    }
+
+    /**
+     * @return The cached converter for enums, primitives and types with a String constructor, NULL for other types
+     */
+    static Function<String, Object> getConverter(Class<?> type) {
+        return CONVERTERS.computeIfAbsent(type, CSVBeanMapping::createConverter).orElse(null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Optional<Function<String, Object>> createConverter(Class<?> type) {
+        if (type == String.class) {
+            return Optional.of(value -> value);
+        }
+        if (type.isEnum()) {
+            final Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            return Optional.of(value -> Enum.valueOf(enumType, value));
+        }
+        Class<?> constructedType = WRAPPERS.getOrDefault(type, type);
+        final MethodHandle constructor;
+        try {
+            constructor = LOOKUP.findConstructor(constructedType, MethodType.methodType(void.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Optional.empty();
+        }
+        return Optional.of(value -> {
+            try {
+                return (Object) constructor.invokeExact(value);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+        });
+    }
+
+    Class<T> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * Creates a bean from the line
+     *
+     * @param nestedResolver Creates values of nested bean types
+     */
+    T create(String[] line, BiFunction<Class<?>, String, Object> nestedResolver) {
+        T bean = newInstance();
+        populate(bean, line, nestedResolver);
+        return bean;
+    }
+
+    /**
+     * Creates an empty bean, so it can be referenced before it is populated
+     */
+    @SuppressWarnings("unchecked")
+    T newInstance() {
+        try {
+            return (T) (Object) constructor.invokeExact();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    /**
+     * Sets the properties of the bean, columns beyond the end of the line are left unset
+     *
+     * @param nestedResolver Creates values of nested bean types
+     */
+    void populate(T bean, String[] line, BiFunction<Class<?>, String, Object> nestedResolver) {
+        try {
+            int length = Math.min(columns.length, line.length);
+            for (int col = 0; col < length; col++) {
+                Column column = columns[col];
+                Object value = column.converter != null
+                        ? column.converter.apply(line[col])
+                        : nestedResolver.apply(column.type, line[col]);
+                column.setter.invokeExact((Object) bean, value);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+}
@@ -24,25 +24,25 @@ package eu.tsystems.mms.tic.testframework.testdata;
 
 import com.opencsv.CSVReader;
 import eu.tsystems.mms.tic.testframework.utils.FileUtils;
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.reflections.Reflections;
 import org.reflections.scanners.ResourcesScanner;
@@ -59,6 +59,8 @@ import org.testng.Assert;
 public class CSVTestDataReader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CSVTestDataReader.class);
+    /** Scanning the class path is expensive, so the found resources are cached */
+    private static final ConcurrentMap<String, Optional<String>> RESOURCE_PATHS = new ConcurrentHashMap<>();
 
     private final static char DEFAULT_SEPARATOR = ';';
     private final static char DEFAULT_QUOTE_CHAR = '\"';
@@ -162,140 +164,134 @@ public class CSVTestDataReader {
      * @return list with created beans
      */
     public <T> List<T> readCsvIntoBeans(final String fileInResources, final Class<T> clazz) {
-
-        final List<String[]> content = this.readAllLinesFromCsvFile(fileInResources);
-        final List<String> header = Arrays.asList(content.get(this.headerRow));
-
-        if (this.headerRow >= 0) {
-            content.subList(0, this.headerRow + 1).clear();
-        }
-
-        return content.stream()
-                .map(arr -> createBeanFromLine(clazz, Arrays.asList(arr), header))
-                .collect(Collectors.toList());
-    }
-
-    private String findFileInResources(String filename) {
-
-        Reflections reflections = new Reflections("", new ResourcesScanner());
-        Set<String> resourceList = reflections.getResources(x -> true);
-        return resourceList.stream()
-                .filter(path -> path.contains(filename))
-                .findFirst()
-                .orElse(null);
-    }
-
-    private FileReader openFileFromResources(String fileInResources) {
-
-        final File resourceFile = FileUtils.getResourceFile(fileInResources);
-        FileReader resourceFileReader = null;
-        try {
-            resourceFileReader = new FileReader(resourceFile);
-        } catch (FileNotFoundException e) {
-            Assert.fail("Could not read file: " + fileInResources);
+        try (Stream<T> beans = streamCsvIntoBeans(fileInResources, clazz)) {
+            return beans.collect(Collectors.toList());
         }
-        return resourceFileReader;
     }
 
-
     /**
-     * creates a bean object with given identifier from specified csv file of type clazz
-     * note: csv file needs to have the same name as the corresponding class,
-     * fieldnames of the class and columnames in the csv should be identical (order of the columns does not matter)
-     * the class should have getter and setter for each field
+     * reads specified csv file from resources line by line and creates beans of type clazz lazily
+     * the mapping of columns to properties is compiled once per class and header
      *
      * @param fileInResources name of the csv file in resources
      * @param clazz           class to create beans from
-     * @param identifier      identifier to find the correct line in the file
-     * @return an object of type class with given identifier
+     * @return lazy stream of created beans, needs to be closed when not consumed completely
+     * @see #readCsvIntoBeans(String, Class)
      */
-    private <T> T readLineIntoBean(String fileInResources, Class<T> clazz, String identifier) {
+    public <T> Stream<T> streamCsvIntoBeans(final String fileInResources, final Class<T> clazz) {
 
-        LOGGER.info(String.format("Reading line with %s from %s", identifier, fileInResources));
+        LOGGER.info(String.format("Reading from %s", fileInResources));
 
-        final List<String[]> reader = readAllLinesFromCsvFile(fileInResources);
-        final Iterator<String[]> ite = reader.iterator();
-        final List<String> headers = Arrays.asList(ite.next());
-        final Iterable<String[]> iterable = () -> ite;
+        final CSVReader csvReader = new CSVReader(this.openFileFromResources(fileInResources), getSeparator(), getQuoteChar(), getSkippedLines());
+        final CSVBeanMapping<T> mapping;
+        try {
+            String[] header = null;
+            for (int i = 0; i <= this.headerRow; i++) {
+                header = readTrimmedLine(csvReader, fileInResources);
+                if (header == null) {
+                    throw new RuntimeException(String.format("No header row found in csv file in resources %s.", fileInResources));
+                }
+            }
+            mapping = CSVBeanMapping.get(clazz, header);
+        } catch (RuntimeException e) {
+            closeQuietly(csvReader);
+            throw e;
+        }
 
-        final List<String> correctLine = StreamSupport.stream(iterable.spliterator(), true)
-                .map(Arrays::asList)
-                .filter(line -> line.contains(identifier))
-                .findFirst()
-                .orElseThrow(
-                        () -> new RuntimeException(String.format("No line with identifier '%s' found in %s", identifier, fileInResources)));
+        final CSVBeanGraph graph = new CSVBeanGraph(this);
+        final Iterator<T> beans = new Iterator<T>() {
+            private String[] nextLine;
+            private boolean finished = false;
+
+            @Override
+            public boolean hasNext() {
+                if (nextLine == null && !finished) {
+                    nextLine = readTrimmedLine(csvReader, fileInResources);
+                    if (nextLine == null) {
+                        finished = true;
+                        closeQuietly(csvReader);
+                    }
+                }
+                return nextLine != null;
+            }
 
-        return createBeanFromLine(clazz, correctLine, headers);
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String[] line = nextLine;
+                nextLine = null;
+                return createBeanFromLine(mapping, line, graph);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(beans, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeQuietly(csvReader));
     }
 
-    private Object handleField(Class type, String value) {
-        Object obj;
-        if (type.isEnum()) {
-            obj = Enum.valueOf(type, value);
-        } else {
-            try {
-                /* try to use Constructor with String as parameter */
-                Constructor constructFromString = type.getConstructor(String.class);
-                obj = constructFromString.newInstance(value);
-            } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                /* searching for another csv in resources to create an object from */
-                String path = findFileInResources(type.getSimpleName() + ".csv");
-                if (path != null) {
-                    /* create object from csv */
-                    obj = readLineIntoBean(path, type, value);
-                } else {
-                    /* create empty object with default constructor */
-                    try {
-                        obj = type.newInstance();
-                    } catch (InstantiationException | IllegalAccessException e1) {
-                        throw new RuntimeException(e1);
-                    }
+    private String[] readTrimmedLine(final CSVReader csvReader, final String fileName) {
+        try {
+            final String[] line = csvReader.readNext();
+            if (line != null) {
+                for (int i = 0; i < line.length; i++) {
+                    line[i] = line[i].trim();
                 }
             }
+            return line;
+        } catch (IOException e) {
+            closeQuietly(csvReader);
+            throw new RuntimeException(String.format("Could not read csv file in resources %s.", fileName), e);
         }
-        return obj;
     }
 
-    private <T> T createBeanFromLine(Class<T> clazz, List<String> line, List<String> header) {
+    private void closeQuietly(final CSVReader csvReader) {
+        try {
+            csvReader.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close csv reader", e);
+        }
+    }
 
-        LOGGER.info(String.format("Creating Bean of %s with following data: %s", clazz.getSimpleName(), String.join(",", line)));
+    String findFileInResources(String filename) {
+        return RESOURCE_PATHS.computeIfAbsent(filename, name -> {
+            Reflections reflections = new Reflections("", new ResourcesScanner());
+            Set<String> resourceList = reflections.getResources(x -> true);
+            return resourceList.stream()
+                    .filter(path -> path.contains(name))
+                    .findFirst();
+        }).orElse(null);
+    }
 
-        T bean;
+    private FileReader openFileFromResources(String fileInResources) {
+
+        final File resourceFile = FileUtils.getResourceFile(fileInResources);
+        FileReader resourceFileReader = null;
         try {
-            bean = clazz.newInstance();
-            for (int col = 0; col < header.size(); col++) {
+            resourceFileReader = new FileReader(resourceFile);
+        } catch (FileNotFoundException e) {
+            Assert.fail("Could not read file: " + fileInResources);
+        }
+        return resourceFileReader;
+    }
 
-                final String headerName = header.get(col);
 
-                if (col >= line.size()) {
-                    break;
-                }
+    private <T> T createBeanFromLine(CSVBeanMapping<T> mapping, String[] line, CSVBeanGraph graph) {
 
-                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
-                PropertyDescriptor propDesc = Arrays.stream(beanInfo.getPropertyDescriptors())
-                        .filter(descriptor -> descriptor.getDisplayName().equals(headerName))
-                        .findFirst()
-                        .orElseThrow(() -> new RuntimeException(String.format("No property with name %s found", headerName)));
-                Method setter = propDesc.getWriteMethod();
-                Class type = propDesc.getPropertyType();
-                Object obj = handleField(type, line.get(col));
-                setter.invoke(bean, obj);
-            }
-        } catch (InstantiationException | IllegalAccessException | IntrospectionException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Creating Bean of %s with following data: %s", mapping.getBeanClass().getSimpleName(), String.join(",", line)));
         }
 
-        return bean;
+        return mapping.create(line, graph::resolve);
     }
 
-    private List<String[]> readAllLinesFromCsvFile(final String fileName) {
+    List<String[]> readAllLinesFromCsvFile(final String fileName) {
 
         LOGGER.info(String.format("Reading from %s", fileName));
 
         final FileReader fileReader = this.openFileFromResources(fileName);
-        final CSVReader csvReader = new CSVReader(fileReader, getSeparator(), getQuoteChar(), getSkippedLines());
 
-        try {
+        try (CSVReader csvReader = new CSVReader(fileReader, getSeparator(), getQuoteChar(), getSkippedLines())) {
             return csvReader.readAll().stream().map(l -> Arrays.stream(l).map(String::trim).toArray(String[]::new)).collect(Collectors.toList());
         } catch (IOException e) {
             throw new RuntimeException(String.format("Could not read csv file in resources %s.", fileName), e);
@@ -0,0 +1,164 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+/**
+ * An opened sheet of a xls(x) file. Sessions are not shared between readers, so they need no synchronization.
+ * Files are locked per file while they are loaded or written, so different files can be accessed concurrently.
+ */
+final class XLSSession implements Closeable {
+
+    private static final ConcurrentMap<String, ReadWriteLock> FILE_LOCKS = new ConcurrentHashMap<>();
+
+    private final String source;
+    private final Workbook workbook;
+    private final Sheet sheet;
+    private final FormulaEvaluator formulaEvaluator;
+
+    private XLSSession(String source, Workbook workbook, String sheetName) {
+        this.source = source;
+        this.workbook = workbook;
+        this.sheet = workbook.getSheet(sheetName);
+        if (this.sheet == null) {
+            throw new SystemException("No sheet with name " + sheetName + " found.");
+        }
+        this.formulaEvaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    }
+
+    private static ReadWriteLock getLock(File file) {
+        return FILE_LOCKS.computeIfAbsent(file.getAbsoluteFile().toPath().normalize().toString(), path -> new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Opens a sheet of a xls(x) file on the file system
+     */
+    static XLSSession open(final File file, final String sheetName) {
+        Workbook workbook;
+        Lock lock = getLock(file).readLock();
+        lock.lock();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            workbook = WorkbookFactory.create(inputStream);
+        } catch (IOException | InvalidFormatException e) {
+            throw new SystemException("Cannot read xls(x) file: " + file, e);
+        } finally {
+            lock.unlock();
+        }
+        return open(file.toString(), workbook, sheetName);
+    }
+
+    /**
+     * Opens a sheet of a xls(x) resource
+     */
+    static XLSSession openResource(final String fileInResources, final String sheetName) {
+        URL resource = Thread.currentThread().getContextClassLoader().getResource(fileInResources);
+        if (resource == null) {
+            throw new SystemException("Error reading resource file " + fileInResources);
+        }
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return open(new File(resource.toURI()), sheetName);
+            } catch (URISyntaxException e) {
+                // read from the stream
+            }
+        }
+        Workbook workbook;
+        try (InputStream inputStream = resource.openStream()) {
+            workbook = WorkbookFactory.create(inputStream);
+        } catch (IOException | InvalidFormatException e) {
+            throw new SystemException("Cannot read xls(x) file: " + fileInResources, e);
+        }
+        return open(fileInResources, workbook, sheetName);
+    }
+
+    private static XLSSession open(String source, Workbook workbook, String sheetName) {
+        try {
+            return new XLSSession(source, workbook, sheetName);
+        } catch (SystemException e) {
+            closeQuietly(workbook, source);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the workbook while no other session reads or writes the same file
+     */
+    static void write(final Workbook workbook, final File file) throws IOException {
+        Lock lock = getLock(file).writeLock();
+        lock.lock();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            workbook.write(outputStream);
+            outputStream.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    Workbook getWorkbook() {
+        return workbook;
+    }
+
+    Sheet getSheet() {
+        return sheet;
+    }
+
+    FormulaEvaluator getFormulaEvaluator() {
+        return formulaEvaluator;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(workbook, source);
+    }
+
+    private static void closeQuietly(Workbook workbook, String source) {
+        try {
+            workbook.close();
+        } catch (IOException e) {
+            AbstractXLSIO.LOGGER.debug("Error closing " + source, e);
+        }
+    }
+}
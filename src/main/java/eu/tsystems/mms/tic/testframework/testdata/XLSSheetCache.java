@@ -0,0 +1,224 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide LRU cache of parsed xls(x) sheets, shared by all {@link XLSTestDataReader}s.
+ * Sheets are keyed by their source, sheet name, reader class and reader settings
+ * and reloaded when the modification time or the length of the source changes.
+ * The least recently used sheets are evicted when the cached cells exceed {@link #MAX_CELLS}.
+ * Concurrent readers of the same sheet wait for a single parse.
+ */
+public final class XLSSheetCache {
+
+    /**
+     * Maximum number of cached cells of all sheets, 0 disables the cache
+     */
+    public static final String MAX_CELLS = "tt.testdata.xls.cache.max.cells";
+
+    private static final long MAX_CACHED_CELLS = PropertyManager.getIntProperty(MAX_CELLS, 5_000_000);
+
+    private static final Map<Key, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedCells = 0;
+
+    private static final class Key {
+        private final String source;
+        private final String sheetName;
+        /**
+         * Subclasses may format the cells differently
+         */
+        private final Class<?> readerClass;
+        private final int headerRow;
+        private final int indexColumn;
+        /**
+         * Compared by pattern, locale dependent symbols, time zone and calendar settings
+         */
+        private final SimpleDateFormat dateFormat;
+        private final String timeZoneId;
+        private final Class<?> calendarClass;
+
+        private Key(String source, String sheetName, AbstractXLSIO settings) {
+            this.source = source;
+            this.sheetName = sheetName;
+            this.readerClass = settings.getClass();
+            this.headerRow = settings.getHeaderRow();
+            this.indexColumn = settings.getIndexColumn();
+            this.dateFormat = (SimpleDateFormat) settings.getSimpleDateFormat().clone();
+            this.timeZoneId = dateFormat.getTimeZone().getID();
+            this.calendarClass = dateFormat.getCalendar().getClass();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return headerRow == key.headerRow
+                    && indexColumn == key.indexColumn
+                    && readerClass == key.readerClass
+                    && source.equals(key.source)
+                    && sheetName.equals(key.sheetName)
+                    && timeZoneId.equals(key.timeZoneId)
+                    && calendarClass == key.calendarClass
+                    && dateFormat.equals(key.dateFormat);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, sheetName, readerClass, headerRow, indexColumn, dateFormat.toPattern(), timeZoneId);
+        }
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+        private final long length;
+        private final CompletableFuture<XLSSheetData> sheetData = new CompletableFuture<>();
+        private long cells = 0;
+
+        private Entry(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    private XLSSheetCache() {
+
+    }
+
+    /**
+     * @param lastModified Modification time of the source, 0 for sources which do not change
+     * @param length Length of the source, 0 for sources which do not change
+     * @param loader Parses the sheet on a cache miss
+     */
+    static XLSSheetData get(String source, String sheetName, AbstractXLSIO settings, long lastModified, long length, Supplier<XLSSheetData> loader) {
+        if (MAX_CACHED_CELLS <= 0) {
+            return loader.get();
+        }
+        Key key = new Key(source, sheetName, settings);
+        Entry entry;
+        boolean load = false;
+        synchronized (CACHE) {
+            entry = CACHE.get(key);
+            if (entry == null || entry.lastModified != lastModified || entry.length != length) {
+                if (entry != null) {
+                    remove(key);
+                }
+                entry = new Entry(lastModified, length);
+                CACHE.put(key, entry);
+                load = true;
+            }
+        }
+
+        if (load) {
+            try {
+                XLSSheetData sheetData = loader.get();
+                entry.sheetData.complete(sheetData);
+                added(key, entry, sheetData.getCells());
+            } catch (RuntimeException e) {
+                synchronized (CACHE) {
+                    if (CACHE.get(key) == entry) {
+                        CACHE.remove(key);
+                    }
+                }
+                entry.sheetData.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return entry.sheetData.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void added(Key key, Entry entry, long cells) {
+        synchronized (CACHE) {
+            if (CACHE.get(key) != entry) {
+                return;
+            }
+            entry.cells = cells;
+            cachedCells += cells;
+            Iterator<Map.Entry<Key, Entry>> iterator = CACHE.entrySet().iterator();
+            while (cachedCells > MAX_CACHED_CELLS && iterator.hasNext()) {
+                Map.Entry<Key, Entry> eldest = iterator.next();
+                // keeps the sheet just loaded and sheets still loading
+                if (eldest.getValue() != entry && eldest.getValue().sheetData.isDone()) {
+                    cachedCells -= eldest.getValue().cells;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static void remove(Key key) {
+        Entry entry = CACHE.remove(key);
+        if (entry != null) {
+            cachedCells -= entry.cells;
+        }
+    }
+
+    /**
+     * Removes all cached sheets
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cachedCells = 0;
+        }
+    }
+
+    /**
+     * @return Number of cached sheets
+     */
+    public static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * @return Number of cells of all cached sheets
+     */
+    public static long getCachedCells() {
+        synchronized (CACHE) {
+            return cachedCells;
+        }
+    }
+}
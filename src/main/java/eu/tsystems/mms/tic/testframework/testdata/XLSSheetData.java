@@ -0,0 +1,129 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
+import eu.tsystems.mms.tic.testframework.testdata.model.DataTable;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * Immutable, formatted copy of a xls(x) sheet, indexed by the index column.
+ * Instances are shared between threads by the {@link XLSSheetCache}.
+ */
+final class XLSSheetData {
+
+    private final DataTable table;
+    private final boolean hasHeader;
+    private final int indexColumn;
+
+    private XLSSheetData(DataTable table, boolean hasHeader, int indexColumn) {
+        this.table = table;
+        this.hasHeader = hasHeader;
+        this.indexColumn = indexColumn;
+    }
+
+    /**
+     * Formats all cells of the session's sheet with the settings of the given reader
+     */
+    static XLSSheetData read(AbstractXLSIO xlsIO, XLSSession session) {
+        return xlsIO.formatInSession(session, () -> format(xlsIO, session.getSheet()));
+    }
+
+    private static XLSSheetData format(AbstractXLSIO xlsIO, Sheet sheet) {
+        int indexColumn = xlsIO.getIndexColumn();
+        Row headerRow = sheet.getRow(xlsIO.getHeaderRow() - 1);
+        if (headerRow == null) {
+            return new XLSSheetData(new DataTable.Builder().build(), false, indexColumn);
+        }
+
+        String[] header = new String[Math.max(0, headerRow.getLastCellNum())];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = xlsIO.getStringCellValue(headerRow.getCell(i)).trim();
+        }
+
+        DataTable.Builder builder = new DataTable.Builder(header);
+        String[] values = new String[header.length];
+        for (int i = headerRow.getRowNum() + 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            String id = null;
+            for (int column = 0; column < header.length; column++) {
+                values[column] = row == null ? "" : xlsIO.getStringCellValue(row.getCell(column)).trim();
+            }
+            if (row != null && row.getCell(indexColumn - 1) != null) {
+                id = xlsIO.getStringCellValue(row.getCell(indexColumn - 1)).trim();
+            }
+            builder.addRow(id, values);
+        }
+        return new XLSSheetData(builder.build(), true, indexColumn);
+    }
+
+    /**
+     * @return Number of cells for the cache size
+     */
+    long getCells() {
+        return (long) table.getHeader().size() * (table.size() + 1);
+    }
+
+    DataTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return The data set with the given id in the index column
+     */
+    Map<String, String> getDataSet(final String id) {
+        if (!hasHeader) {
+            throw new SystemException("Header row is empty.");
+        }
+        return new HashMap<>(table.getRow(findRow(id)));
+    }
+
+    /**
+     * @return All data sets from (fromId) to (toId), NULL ids read from the first or to the last row
+     */
+    List<Map<String, String>> getDataSets(final String fromId, final String toId) {
+        List<Map<String, String>> dataSetList = new LinkedList<>();
+        int start = fromId == null ? 0 : findRow(fromId);
+        String to = toId == null ? null : toId.trim();
+        for (int i = start; i < table.size(); i++) {
+            dataSetList.add(new HashMap<>(table.getRow(i)));
+            if (to != null && to.equals(table.getIdentifier(i))) {
+                break;
+            }
+        }
+        return dataSetList;
+    }
+
+    private int findRow(final String id) {
+        int row = table.indexOf(id.trim());
+        if (row < 0) {
+            throw new SystemException("Could not find a dataset for >" + id + "< in column " + indexColumn
+                    + " in current worksheet.");
+        }
+        return row;
+    }
+}
@@ -22,12 +22,18 @@
  package eu.tsystems.mms.tic.testframework.testdata;
 
 import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
-import java.util.HashMap;
-import java.util.LinkedList;
+import eu.tsystems.mms.tic.testframework.testdata.model.DataTable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class XLSTestDataReader extends AbstractXLSIO {
 
@@ -41,9 +47,7 @@ public class XLSTestDataReader extends AbstractXLSIO {
      */
     public Map<String, String> readXLSTestDataFromResource(final String fileInResources, final String sheetName,
             final String id) {
-        openFileFromResource(fileInResources, sheetName);
-        Map<String, String> readDataSet = readDataSet(id);
-        return readDataSet;
+        return getSheetDataFromResource(fileInResources, sheetName).getDataSet(id);
     }
 
     /**
@@ -56,59 +60,78 @@ public class XLSTestDataReader extends AbstractXLSIO {
      */
     public Map<String, String> readXLSTestDataFromFile(final String file, final String sheetName,
             final String id) {
-        openFileAbsolute(file, sheetName);
-        Map<String, String> readDataSet = readDataSet(id);
-        return readDataSet;
+        return getSheetDataFromFile(file, sheetName).getDataSet(id);
     }
 
     /**
-     * Read data set from id
+     * Read a complete sheet of an xls resource file into a shared, read-only table indexed by the index column.
      *
-     * @param id to read
-     * @return data set for id
+     * @param fileInResources name of file in resources.
+     * @param sheetName Name of xls sheet.
+     * @return Columnar table of the rows after the header row.
      */
-    private Map<String, String> readDataSet(final String id) {
-        // create formula evaluator object
-        formulaEvaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    public DataTable readXLSTestDataTableFromResource(final String fileInResources, final String sheetName) {
+        return getSheetDataFromResource(fileInResources, sheetName).getTable();
+    }
 
-        // get header
-        Row headerRow = sheet.getRow(this.headerRow - 1);
+    /**
+     * Read a complete sheet of an xls file into a shared, read-only table indexed by the index column.
+     *
+     * @param fileAbsolutePath absolute path of file
+     * @param sheetName Name of xls sheet.
+     * @return Columnar table of the rows after the header row.
+     */
+    public DataTable readXLSTestDataTableFromFile(final String fileAbsolutePath, final String sheetName) {
+        return getSheetDataFromFile(fileAbsolutePath, sheetName).getTable();
+    }
 
-        if (headerRow == null) {
-            throw new SystemException("Header row is empty. Row " + this.headerRow + " (1-based)");
+    /**
+     * Parsed sheet from the {@link XLSSheetCache}
+     */
+    private XLSSheetData getSheetDataFromResource(final String fileInResources, final String sheetName) {
+        URL resource = Thread.currentThread().getContextClassLoader().getResource(fileInResources);
+        if (resource == null) {
+            throw new SystemException("Error reading resource file " + fileInResources);
         }
+        long lastModified = 0;
+        long length = 0;
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                File file = new File(resource.toURI());
+                lastModified = file.lastModified();
+                length = file.length();
+            } catch (URISyntaxException e) {
+                // resources in archives do not change
+            }
+        }
+        setLastSource(() -> XLSSession.openResource(fileInResources, sheetName));
+        return XLSSheetCache.get(resource.toString(), sheetName, this, lastModified, length, () -> {
+            LOGGER.info("Reading from " + fileInResources);
+            return readSheetData(XLSSession.openResource(fileInResources, sheetName));
+        });
+    }
 
-        // find matching row
-        Row row = findRowWithIndex(id);
-
-        // Create the dataset
-        Map<String, String> dataSet = readDataSet(headerRow, row);
-
-        return dataSet;
-
+    /**
+     * Parsed sheet from the {@link XLSSheetCache}
+     */
+    private XLSSheetData getSheetDataFromFile(final String file, final String sheetName) {
+        File xlsFile = new File(file);
+        setLastSource(() -> XLSSession.open(xlsFile, sheetName));
+        return XLSSheetCache.get(xlsFile.getAbsolutePath(), sheetName, this, xlsFile.lastModified(), xlsFile.length(), () -> {
+            LOGGER.info("Reading from " + file);
+            return readSheetData(XLSSession.open(xlsFile, sheetName));
+        });
     }
 
     /**
-     * Put data of a found row in a dataset structure
-     *
-     * @param headerRow Row with header information
-     * @param row Row to read data from.
-     * @return Map mapping header to data.
+     * Formats the sheet within its own session, so the reader can be used by parallel threads
      */
-    private Map<String, String> readDataSet(Row headerRow, Row row) {
-        // Create the dataset
-        Map<String, String> dataSet = new HashMap<String, String>();
-
-        // this is the data set we are looking for, so grep the data
-        String key;
-        String value;
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            key = getStringCellValue(headerRow.getCell(i)).trim();
-            value = getStringCellValue(row.getCell(i)).trim();
-            dataSet.put(key, value);
+    private XLSSheetData readSheetData(final XLSSession session) {
+        try {
+            return XLSSheetData.read(this, session);
+        } finally {
+            session.close();
         }
-
-        return dataSet;
     }
 
     /**
@@ -134,8 +157,7 @@ public class XLSTestDataReader extends AbstractXLSIO {
      */
     public List<Map<String, String>> readXLSTestDataFromResource(final String fileInResources,
             final String sheetName, final String fromId, final String toId) {
-        openFileFromResource(fileInResources, sheetName);
-        return readXLSTestData(fromId, toId);
+        return getSheetDataFromResource(fileInResources, sheetName).getDataSets(fromId, toId);
     }
 
 
@@ -162,67 +184,108 @@ public class XLSTestDataReader extends AbstractXLSIO {
      */
     public List<Map<String, String>> readXLSTestDataFromFile(final String fileAbsolutePath, final String sheetName,
             final String fromId, final String toId) {
-        openFileAbsolute(fileAbsolutePath, sheetName);
-        return readXLSTestData(fromId, toId);
+        return getSheetDataFromFile(fileAbsolutePath, sheetName).getDataSets(fromId, toId);
     }
 
     /**
-     * gets the data from the loaded source by a specification of a row range
+     * Streams a xlsx resource file from (fromId) to (toId) without loading the workbook into memory.
+     * Close the stream when not consuming it completely.
      *
-     * @param fromId           the row id in the file to start reading
-     * @param toId             the row id in the file until which is read
-     * @return List<Map<String, String>> with data from the specified rows
+     * @param fileInResources name of file in resources.
+     * @param sheetName Name of xlsx sheet.
+     * @param fromId Id in the index column of the first row to read, NULL for the first row after the header
+     * @param toId Id in the index column of the last row to read, NULL for the last row of the sheet
+     * @return Lazy stream of Maps mapping headers to row values.
      */
-    private List<Map<String, String>> readXLSTestData(final String fromId, final String toId) {
-        // create formula evaluator object
-        formulaEvaluator = workbook.getCreationHelper().createFormulaEvaluator();
-
-        // get header
-        Row headerRow = sheet.getRow(this.headerRow - 1);
-
-        // create list
-        List<Map<String, String>> dataSetList = new LinkedList<Map<String, String>>();
-
-        // find matching row
-        Row row;
-        if (fromId == null) {
-            if (headerRow != null) {
-                if (sheet.getLastRowNum() == headerRow.getRowNum()) {
-                	return dataSetList;
-                } else {
-                    row = sheet.getRow(headerRow.getRowNum() + 1);
-                }
-            } else {
-            	return dataSetList;
-            }
-        } else {
-            row = findRowWithIndex(fromId);
-        }
-
-        Map<String, String> dataSet;
+    public Stream<Map<String, String>> streamXLSTestDataFromResource(final String fileInResources, final String sheetName,
+            final String fromId, final String toId) {
+        return toStream(openRowIteratorFromResource(fileInResources, sheetName, fromId, toId));
+    }
 
-        // find next rows
-        String currentIndex;
-        for (int i = row.getRowNum(); i <= sheet.getLastRowNum(); i++) {
-            row = sheet.getRow(i);
+    /**
+     * Streams a xlsx file on the file system from (fromId) to (toId) without loading the workbook into memory.
+     * Close the stream when not consuming it completely.
+     *
+     * @param fileAbsolutePath absolute path of file
+     * @param sheetName Name of xlsx sheet.
+     * @param fromId Id in the index column of the first row to read, NULL for the first row after the header
+     * @param toId Id in the index column of the last row to read, NULL for the last row of the sheet
+     * @return Lazy stream of Maps mapping headers to row values.
+     */
+    public Stream<Map<String, String>> streamXLSTestDataFromFile(final String fileAbsolutePath, final String sheetName,
+            final String fromId, final String toId) {
+        return toStream(openRowIteratorFromFile(fileAbsolutePath, sheetName, fromId, toId));
+    }
 
-            dataSet = readDataSet(headerRow, row);
-            dataSetList.add(dataSet);
+    /**
+     * Lazy TestNG data provider of a xlsx resource file, every row is passed as Map mapping headers to row values.
+     * <pre>
+     * &#64;DataProvider
+     * public Iterator&lt;Object[]&gt; users() {
+     *     return new XLSTestDataReader().createDataProviderFromResource("users.xlsx", "Users", null, null);
+     * }
+     * </pre>
+     *
+     * @see #streamXLSTestDataFromResource(String, String, String, String)
+     */
+    public Iterator<Object[]> createDataProviderFromResource(final String fileInResources, final String sheetName,
+            final String fromId, final String toId) {
+        return toDataProvider(openRowIteratorFromResource(fileInResources, sheetName, fromId, toId));
+    }
 
-            // get current index
-            Cell cell = row.getCell(indexColumn - 1);
+    /**
+     * Lazy TestNG data provider of a xlsx file on the file system, every row is passed as Map mapping headers to row values.
+     *
+     * @see #streamXLSTestDataFromFile(String, String, String, String)
+     */
+    public Iterator<Object[]> createDataProviderFromFile(final String fileAbsolutePath, final String sheetName,
+            final String fromId, final String toId) {
+        return toDataProvider(openRowIteratorFromFile(fileAbsolutePath, sheetName, fromId, toId));
+    }
 
-            if (cell == null) {
-                continue;
+    private XLSXRowIterator openRowIteratorFromResource(final String fileInResources, final String sheetName,
+            final String fromId, final String toId) {
+        LOGGER.info("Streaming from " + fileInResources);
+        URL resource = Thread.currentThread().getContextClassLoader().getResource(fileInResources);
+        if (resource == null) {
+            throw new SystemException("Error reading resource file " + fileInResources);
+        }
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return XLSXRowIterator.open(new File(resource.toURI()), sheetName, this, fromId, toId);
+            } catch (URISyntaxException e) {
+                // read from the stream
             }
+        }
+        try {
+            return XLSXRowIterator.open(resource.openStream(), fileInResources, sheetName, this, fromId, toId);
+        } catch (IOException e) {
+            throw new SystemException("Error reading resource file " + fileInResources, e);
+        }
+    }
 
-            currentIndex = getStringCellValue(cell);
+    private XLSXRowIterator openRowIteratorFromFile(final String fileAbsolutePath, final String sheetName,
+            final String fromId, final String toId) {
+        LOGGER.info("Streaming from " + fileAbsolutePath);
+        return XLSXRowIterator.open(new File(fileAbsolutePath), sheetName, this, fromId, toId);
+    }
+
+    private Stream<Map<String, String>> toStream(final XLSXRowIterator rowIterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rowIterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rowIterator::close);
+    }
 
-            // stop if last index reached
-            if (toId != null && currentIndex.trim().equals(toId.trim())) {
-                break;
+    private Iterator<Object[]> toDataProvider(final XLSXRowIterator rowIterator) {
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return rowIterator.hasNext();
             }
-        }
-        return dataSetList;
+
+            @Override
+            public Object[] next() {
+                return new Object[]{rowIterator.next()};
+            }
+        };
     }
 }
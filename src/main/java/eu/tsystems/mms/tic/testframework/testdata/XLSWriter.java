@@ -24,7 +24,7 @@
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 
 public class XLSWriter extends AbstractXLSIO {
@@ -91,11 +91,6 @@ public class XLSWriter extends AbstractXLSIO {
      */
     public void saveAs(final String filename) throws IOException {
         LOGGER.info("Writing to " + filename);
-        synchronized (LOCK) {
-            FileOutputStream fos = new FileOutputStream(filename);
-            workbook.write(fos);
-            fos.flush();
-            fos.close();
-        }
+        XLSSession.write(workbook, new File(filename));
     }
 }
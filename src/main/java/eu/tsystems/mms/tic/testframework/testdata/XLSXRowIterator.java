@@ -0,0 +1,386 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata;
+
+import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the rows of a xlsx sheet one by one with a StAX parser, without loading the workbook into memory.
+ * Only the shared strings and styles of the workbook are kept in memory.
+ * The iterator closes the file when the last row has been read, {@link #close()} is only required when stopping earlier.
+ *
+ * Formulas are not evaluated, the cached results stored in the file are returned.
+ */
+final class XLSXRowIterator implements Iterator<Map<String, String>>, Closeable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final OPCPackage opcPackage;
+    private final String source;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable styles;
+    private final InputStream sheetStream;
+    private final XMLStreamReader xmlReader;
+    private final DataFormatter dataFormatter = new DataFormatter();
+    private final SimpleDateFormat simpleDateFormat;
+    private final UnaryOperator<String> reformatter;
+
+    private final int headerRow;
+    private final int indexColumn;
+    private final String fromId;
+    private final String toId;
+
+    private List<String> header;
+    private boolean started = false;
+    private boolean finished = false;
+    private Map<String, String> next;
+    private int lastRowNum = -1;
+
+    private XLSXRowIterator(
+            OPCPackage opcPackage,
+            String source,
+            String sheetName,
+            AbstractXLSIO settings,
+            String fromId,
+            String toId
+    ) throws IOException, SAXException, OpenXML4JException, XMLStreamException {
+        this.opcPackage = opcPackage;
+        this.source = source;
+        this.headerRow = settings.getHeaderRow();
+        this.indexColumn = settings.getIndexColumn();
+        this.simpleDateFormat = (SimpleDateFormat) settings.getSimpleDateFormat().clone();
+        this.reformatter = settings::reformatCellValue;
+        this.fromId = fromId == null ? null : fromId.trim();
+        this.toId = toId == null ? null : toId.trim();
+
+        XSSFReader xssfReader = new XSSFReader(opcPackage);
+        this.sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+        this.styles = xssfReader.getStylesTable();
+
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+        InputStream foundSheet = null;
+        while (sheets.hasNext()) {
+            InputStream sheet = sheets.next();
+            if (sheetName.equals(sheets.getSheetName())) {
+                foundSheet = sheet;
+                break;
+            }
+            sheet.close();
+        }
+        if (foundSheet == null) {
+            throw new SystemException("No sheet with name " + sheetName + " found.");
+        }
+        this.sheetStream = foundSheet;
+        this.xmlReader = XML_INPUT_FACTORY.createXMLStreamReader(foundSheet);
+    }
+
+    /**
+     * Opens the sheet of the given xlsx file
+     */
+    static XLSXRowIterator open(File file, String sheetName, AbstractXLSIO settings, String fromId, String toId) {
+        OPCPackage opcPackage;
+        try {
+            opcPackage = OPCPackage.open(file, PackageAccess.READ);
+        } catch (Exception e) {
+            throw new SystemException("Cannot read xlsx file: " + file, e);
+        }
+        return open(opcPackage, file.toString(), sheetName, settings, fromId, toId);
+    }
+
+    /**
+     * Opens the sheet of the given xlsx stream. The package entries are buffered, so prefer {@link #open(File, String, AbstractXLSIO, String, String)}.
+     */
+    static XLSXRowIterator open(InputStream inputStream, String source, String sheetName, AbstractXLSIO settings, String fromId, String toId) {
+        OPCPackage opcPackage;
+        try (InputStream stream = inputStream) {
+            opcPackage = OPCPackage.open(stream);
+        } catch (Exception e) {
+            throw new SystemException("Cannot read xlsx file: " + source, e);
+        }
+        return open(opcPackage, source, sheetName, settings, fromId, toId);
+    }
+
+    private static XLSXRowIterator open(OPCPackage opcPackage, String source, String sheetName, AbstractXLSIO settings, String fromId, String toId) {
+        try {
+            return new XLSXRowIterator(opcPackage, source, sheetName, settings, fromId, toId);
+        } catch (SystemException e) {
+            opcPackage.revert();
+            throw e;
+        } catch (Exception e) {
+            opcPackage.revert();
+            throw new SystemException("Cannot read xlsx file: " + source, e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readNextDataSet();
+            } catch (XMLStreamException e) {
+                close();
+                throw new SystemException("Cannot read xlsx file: " + source, e);
+            } catch (RuntimeException e) {
+                // e.g. missing fromId or unparsable cells, the package would stay open otherwise
+                close();
+                throw e;
+            }
+            if (next == null) {
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> dataSet = next;
+        next = null;
+        return dataSet;
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            xmlReader.close();
+            sheetStream.close();
+        } catch (XMLStreamException | IOException e) {
+            AbstractXLSIO.LOGGER.debug("Error closing sheet of " + source, e);
+        } finally {
+            opcPackage.revert();
+        }
+    }
+
+    private Map<String, String> readNextDataSet() throws XMLStreamException {
+        if (!started) {
+            started = true;
+            if (!readHeader()) {
+                return null;
+            }
+            if (fromId != null) {
+                return findFirstDataSet();
+            }
+        }
+        List<String> row = readNextRow();
+        return row == null ? null : toDataSet(row);
+    }
+
+    private boolean readHeader() throws XMLStreamException {
+        List<String> row;
+        while ((row = readNextRow()) != null) {
+            if (lastRowNum == headerRow - 1) {
+                header = new ArrayList<>(row.size());
+                for (String key : row) {
+                    header.add(key.trim());
+                }
+                return true;
+            } else if (lastRowNum > headerRow - 1) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, String> findFirstDataSet() throws XMLStreamException {
+        List<String> row;
+        while ((row = readNextRow()) != null) {
+            if (fromId.equals(getIndex(row))) {
+                return toDataSet(row);
+            }
+        }
+        throw new SystemException("Could not find a dataset for >" + fromId + "< in column " + indexColumn
+                + " in current worksheet.");
+    }
+
+    private String getIndex(List<String> row) {
+        return indexColumn - 1 < row.size() ? row.get(indexColumn - 1).trim() : null;
+    }
+
+    private Map<String, String> toDataSet(List<String> row) {
+        Map<String, String> dataSet = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            dataSet.put(header.get(i), i < row.size() ? row.get(i).trim() : "");
+        }
+        if (toId != null && toId.equals(getIndex(row))) {
+            close();
+        }
+        return dataSet;
+    }
+
+    /**
+     * @return Cell values of the next row, missing cells are empty strings. NULL at the end of the sheet.
+     */
+    private List<String> readNextRow() throws XMLStreamException {
+        while (xmlReader.hasNext()) {
+            if (xmlReader.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xmlReader.getLocalName())) {
+                String rowRef = xmlReader.getAttributeValue(null, "r");
+                lastRowNum = rowRef != null ? Integer.parseInt(rowRef) - 1 : lastRowNum + 1;
+                return readCells();
+            }
+        }
+        return null;
+    }
+
+    private List<String> readCells() throws XMLStreamException {
+        List<String> cells = new ArrayList<>();
+        while (xmlReader.hasNext()) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xmlReader.getLocalName())) {
+                String cellRef = xmlReader.getAttributeValue(null, "r");
+                int column = cellRef != null ? getColumnIndex(cellRef) : cells.size();
+                String value = readCell(xmlReader.getAttributeValue(null, "t"), xmlReader.getAttributeValue(null, "s"));
+                while (cells.size() < column) {
+                    cells.add("");
+                }
+                cells.add(value);
+            } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xmlReader.getLocalName())) {
+                break;
+            }
+        }
+        return cells;
+    }
+
+    private String readCell(String type, String styleIndex) throws XMLStreamException {
+        String value = null;
+        StringBuilder inlineString = null;
+        while (xmlReader.hasNext()) {
+            int event = xmlReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xmlReader.getLocalName();
+                if ("v".equals(name)) {
+                    value = xmlReader.getElementText();
+                } else if ("is".equals(name)) {
+                    inlineString = new StringBuilder();
+                } else if ("t".equals(name) && inlineString != null) {
+                    inlineString.append(xmlReader.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xmlReader.getLocalName())) {
+                break;
+            }
+        }
+
+        if (inlineString != null) {
+            return inlineString.toString();
+        }
+        if (value == null) {
+            return "";
+        }
+        if (type == null) {
+            type = "n";
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings.getEntryAt(Integer.parseInt(value));
+            case "b":
+                return Boolean.toString(!"0".equals(value));
+            case "e":
+                return "Error " + value;
+            case "str":
+            case "inlineStr":
+                return value;
+            default:
+                return formatNumber(value, styleIndex);
+        }
+    }
+
+    private String formatNumber(String value, String styleIndex) {
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+        int formatIndex = 0;
+        String formatString = null;
+        if (styleIndex != null && styles != null) {
+            XSSFCellStyle style = styles.getStyleAt(Integer.parseInt(styleIndex));
+            if (style != null) {
+                formatIndex = style.getDataFormat();
+                formatString = style.getDataFormatString();
+            }
+        }
+        if (formatString == null) {
+            formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+        }
+        if (formatString != null && DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(number)) {
+            return simpleDateFormat.format(DateUtil.getJavaDate(number));
+        }
+        if (formatString == null) {
+            return reformatter.apply(Double.toString(number));
+        }
+        return reformatter.apply(dataFormatter.formatRawCellContents(number, formatIndex, formatString));
+    }
+
+    /**
+     * @return 0-based column of a cell reference like AB12
+     */
+    private static int getColumnIndex(String cellRef) {
+        int column = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char c = cellRef.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+}
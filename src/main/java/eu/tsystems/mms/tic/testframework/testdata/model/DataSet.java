@@ -36,7 +36,7 @@ public class DataSet {
     /**
      * Identifier string.
      */
-    private String identifier;
+    private final String identifier;
 
     /**
      * Data elements.
@@ -90,7 +90,7 @@ public class DataSet {
         return dataElements;
     }
 
-    public synchronized String getIdentifier() {
+    public String getIdentifier() {
         return identifier;
     }
 
@@ -21,8 +21,10 @@
  */
  package eu.tsystems.mms.tic.testframework.testdata.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Data set container.
@@ -35,16 +37,19 @@ public abstract class DataSetContainer {
     /**
      * List of data sets.
      */
-    private List<DataSet> dataSets = new ArrayList<DataSet>(1);
+    private final List<DataSet> dataSets = new CopyOnWriteArrayList<>();
+
+    /**
+     * First data set per identifier.
+     */
+    private final Map<String, DataSet> dataSetIndex = new ConcurrentHashMap<>();
 
     /**
      * Creates a data set container with at least 1 data set.
      * @param dataSets Optional data set.
      */
     public DataSetContainer(DataSet... dataSets) {
-        for (DataSet dataSet : dataSets) {
-            this.dataSets.add(dataSet);
-        }
+        addDataSets(dataSets);
     }
 
     /**
@@ -58,9 +63,12 @@ public abstract class DataSetContainer {
      *
      * @param dataSetsToAdd One or more data sets.
      */
-    public synchronized void addDataSets(final DataSet... dataSetsToAdd) {
+    public void addDataSets(final DataSet... dataSetsToAdd) {
         for (DataSet dataSet : dataSetsToAdd) {
             dataSets.add(dataSet);
+            if (dataSet.getIdentifier() != null) {
+                dataSetIndex.putIfAbsent(dataSet.getIdentifier(), dataSet);
+            }
         }
     }
 
@@ -70,7 +78,12 @@ public abstract class DataSetContainer {
      * @param identifier .
      * @return dataset or null.
      */
-    public synchronized DataSet getDataSet(final String identifier) {
+    public DataSet getDataSet(final String identifier) {
+        DataSet indexed = identifier == null ? null : dataSetIndex.get(identifier);
+        if (indexed != null) {
+            return indexed;
+        }
+        // data sets added to the list directly are not indexed
         for (DataSet dataSet : dataSets) {
             if (dataSet.getIdentifier().equals(identifier)) {
                 return dataSet;
@@ -84,7 +97,7 @@ public abstract class DataSetContainer {
      *
      * @return List of data sets.
      */
-    public synchronized List<DataSet> getDataSets() {
+    public List<DataSet> getDataSets() {
         return dataSets;
     }
 }
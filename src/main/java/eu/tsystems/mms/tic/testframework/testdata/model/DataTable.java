@@ -0,0 +1,368 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.testdata.model;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, columnar table of string test data.
+ * All rows share one header dictionary, every column stores codes into its own dictionary of distinct values
+ * (one byte per cell for up to 256 distinct values), equal values of all columns share one instance,
+ * and rows are found by identifier through a hash index.
+ * Rows are exposed as read-only {@link Map} views without copying.
+ * Tables are safely shareable between threads without locking.
+ * Like a map, the last of duplicate header names wins.
+ */
+public final class DataTable {
+
+    /**
+     * Codes of a column, the narrowest array type that fits the dictionary is used
+     */
+    private interface Codes {
+        int get(int row);
+    }
+
+    private final String[] header;
+    private final Map<String, Integer> columnIndex;
+    private final String[][] dictionaries;
+    private final int distinctValues;
+    private final Codes[] columns;
+    private final int size;
+    private final Map<String, Integer> rowIndex;
+    private final String[] identifiers;
+    private final List<Map<String, String>> rows = new AbstractList<Map<String, String>>() {
+        @Override
+        public Map<String, String> get(int index) {
+            return getRow(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    private DataTable(Builder builder) {
+        this.header = builder.header;
+        this.columnIndex = new HashMap<>(builder.columnIndex);
+        this.distinctValues = builder.values.size();
+        this.size = builder.size;
+        this.dictionaries = new String[header.length][];
+        this.columns = new Codes[header.length];
+        for (int column = 0; column < header.length; column++) {
+            dictionaries[column] = builder.dictionaries.get(column).toArray(new String[0]);
+            columns[column] = compact(builder.codes[column], size, dictionaries[column].length);
+        }
+        this.rowIndex = new HashMap<>(builder.rowIndex);
+        this.identifiers = Arrays.copyOf(builder.identifiers, size);
+    }
+
+    private static Codes compact(int[] codes, int size, int dictionarySize) {
+        if (dictionarySize <= 1 << Byte.SIZE) {
+            final byte[] bytes = new byte[size];
+            for (int row = 0; row < size; row++) {
+                bytes[row] = (byte) codes[row];
+            }
+            return row -> bytes[row] & 0xFF;
+        } else if (dictionarySize <= 1 << Short.SIZE) {
+            final char[] chars = new char[size];
+            for (int row = 0; row < size; row++) {
+                chars[row] = (char) codes[row];
+            }
+            return row -> chars[row];
+        } else {
+            final int[] ints = Arrays.copyOf(codes, size);
+            return row -> ints[row];
+        }
+    }
+
+    /**
+     * Read-only view of a row
+     */
+    private final class Row extends AbstractMap<String, String> {
+        private final int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            Integer column = columnIndex.get(key);
+            return column == null ? null : getValue(row, column);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndex.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return columnIndex.size();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int column = nextColumn(0);
+
+                        /**
+                         * Skips duplicate header names like a map would
+                         */
+                        private int nextColumn(int column) {
+                            while (column < header.length && columnIndex.get(header[column]) != column) {
+                                column++;
+                            }
+                            return column;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < header.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(header[column], getValue(row, column));
+                            column = nextColumn(column + 1);
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columnIndex.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public List<String> getHeader() {
+        return Collections.unmodifiableList(Arrays.asList(header));
+    }
+
+    /**
+     * @return Number of distinct values of all columns
+     */
+    public int getDictionarySize() {
+        return distinctValues;
+    }
+
+    /**
+     * @param row 0-based
+     */
+    public Map<String, String> getRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new Row(row);
+    }
+
+    /**
+     * @return The first row with the given identifier or NULL
+     */
+    public Map<String, String> getRow(String identifier) {
+        Integer row = rowIndex.get(identifier);
+        return row == null ? null : new Row(row);
+    }
+
+    /**
+     * @return The 0-based position of the first row with the given identifier or -1
+     */
+    public int indexOf(String identifier) {
+        Integer row = rowIndex.get(identifier);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @return The identifier of the row or NULL
+     */
+    public String getIdentifier(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return identifiers[row];
+    }
+
+    /**
+     * @return The value or NULL if the column does not exist
+     */
+    public String getValue(int row, String column) {
+        return getRow(row).get(column);
+    }
+
+    private String getValue(int row, int column) {
+        return dictionaries[column][columns[column].get(row)];
+    }
+
+    /**
+     * @return Read-only list of all rows
+     */
+    public List<Map<String, String>> getRows() {
+        return rows;
+    }
+
+    public Stream<Map<String, String>> stream() {
+        return rows.stream();
+    }
+
+    /**
+     * Builds a {@link DataTable}. Builders are not thread-safe.
+     */
+    public static final class Builder {
+        private final String[] header;
+        private final Map<String, Integer> columnIndex = new HashMap<>();
+        private final List<List<String>> dictionaries = new ArrayList<>();
+        private final List<Map<String, Integer>> dictionaryIndexes = new ArrayList<>();
+        private final Map<String, String> values = new HashMap<>();
+        private final Map<String, Integer> rowIndex = new HashMap<>();
+        private final int[][] codes;
+        private String[] identifiers;
+        private int capacity = 16;
+        private int size = 0;
+        private int identifierColumn = -1;
+
+        public Builder(String... header) {
+            this.header = header.clone();
+            for (int column = 0; column < header.length; column++) {
+                columnIndex.put(header[column], column);
+            }
+            this.codes = new int[header.length][capacity];
+            this.identifiers = new String[capacity];
+            for (int column = 0; column < header.length; column++) {
+                dictionaries.add(new ArrayList<>());
+                dictionaryIndexes.add(new HashMap<>());
+            }
+        }
+
+        public Builder(List<String> header) {
+            this(header.toArray(new String[0]));
+        }
+
+        /**
+         * Indexes rows added without explicit identifier by the given column
+         */
+        public Builder setIdentifierColumn(String column) {
+            Integer index = columnIndex.get(column);
+            if (index == null) {
+                throw new IllegalArgumentException("No column with name " + column + " found.");
+            }
+            this.identifierColumn = index;
+            return this;
+        }
+
+        /**
+         * Adds a row, missing values are empty strings
+         */
+        public Builder addRow(String... values) {
+            String identifier = identifierColumn >= 0 && identifierColumn < values.length ? values[identifierColumn] : null;
+            return addRow(identifier, values);
+        }
+
+        /**
+         * Adds a row with the given identifier
+         */
+        public Builder addRow(String identifier, String[] values) {
+            if (size == capacity) {
+                grow();
+            }
+            for (int column = 0; column < header.length; column++) {
+                String value = column < values.length && values[column] != null ? values[column] : "";
+                codes[column][size] = encode(column, value);
+            }
+            if (identifier != null) {
+                identifier = canonicalize(identifier);
+                rowIndex.putIfAbsent(identifier, size);
+            }
+            identifiers[size] = identifier;
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds a row of values by header name
+         */
+        public Builder addRow(Map<String, String> values) {
+            String[] row = new String[header.length];
+            for (int column = 0; column < header.length; column++) {
+                row[column] = values.get(header[column]);
+            }
+            return addRow(row);
+        }
+
+        private void grow() {
+            capacity *= 2;
+            for (int column = 0; column < codes.length; column++) {
+                codes[column] = Arrays.copyOf(codes[column], capacity);
+            }
+            identifiers = Arrays.copyOf(identifiers, capacity);
+        }
+
+        private int encode(int column, String value) {
+            Map<String, Integer> dictionaryIndex = dictionaryIndexes.get(column);
+            Integer code = dictionaryIndex.get(value);
+            if (code == null) {
+                List<String> dictionary = dictionaries.get(column);
+                code = dictionary.size();
+                dictionary.add(canonicalize(value));
+                dictionaryIndex.put(value, code);
+            }
+            return code;
+        }
+
+        private String canonicalize(String value) {
+            String canonical = values.putIfAbsent(value, value);
+            return canonical == null ? value : canonical;
+        }
+
+        public DataTable build() {
+            return new DataTable(this);
+        }
+    }
+}
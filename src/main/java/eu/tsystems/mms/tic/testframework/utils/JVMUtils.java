@@ -28,6 +28,9 @@ import org.slf4j.LoggerFactory;
 import javax.management.MBeanServerConnection;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public final class JVMUtils {
 
@@ -80,4 +83,14 @@ public final class JVMUtils {
         return usedMemory;
     }
 
+    /**
+     * @return An executor starting a new virtual thread per task, if the JVM supports virtual threads
+     */
+    public static Optional<ExecutorService> createVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+    }
 }
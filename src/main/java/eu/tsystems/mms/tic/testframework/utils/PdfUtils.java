@@ -19,27 +19,149 @@
  * under the License.
  *
  */
- package eu.tsystems.mms.tic.testframework.utils;
+package eu.tsystems.mms.tic.testframework.utils;
 
-import org.apache.pdfbox.cos.COSDocument;
-import org.apache.pdfbox.pdfparser.PDFParser;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import org.apache.pdfbox.io.RandomAccessFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.util.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Class for Reading Pdfs
+ * Class for Reading Pdfs. Extracted texts are cached by content, see {@link TextExtractionCache}.
  *
  * @author wakr
  */
 public final class PdfUtils {
 
+    /**
+     * Parse pdfs with a temporary scratch file instead of keeping the document structure in memory
+     */
+    public static final String SCRATCH_FILE = "tt.pdf.scratchfile";
+
     /** Logger */
     private static final Logger LOG = LoggerFactory.getLogger(PdfUtils.class);
 
+    /**
+     * Receives the text of the pages one after another.
+     */
+    public interface PageTextConsumer {
+        /**
+         * @param pageNumber Page number, starting with 1
+         * @param text Text of the page
+         * @return false to stop the extraction
+         */
+        boolean accept(int pageNumber, String text);
+    }
+
+    /**
+     * Aborts the text stripper when the consumer has enough
+     */
+    private static class StopExtractionException extends RuntimeException {
+        private StopExtractionException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Passes the text of every page to the consumer instead of collecting the text of the whole document
+     */
+    private static class PageTextStripper extends PDFTextStripper {
+        private final StringWriter pageOutput = new StringWriter();
+        private final PageTextConsumer consumer;
+
+        private PageTextStripper(PageTextConsumer consumer) throws IOException {
+            this.consumer = consumer;
+        }
+
+        private void extract(PDDocument document) throws IOException {
+            try {
+                writeText(document, pageOutput);
+            } catch (StopExtractionException e) {
+                LOG.debug("Stopped text extraction after page " + getCurrentPageNo());
+            }
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            output.flush();
+            StringBuffer buffer = pageOutput.getBuffer();
+            String text = buffer.toString();
+            buffer.setLength(0);
+            if (!consumer.accept(getCurrentPageNo(), text)) {
+                throw new StopExtractionException();
+            }
+        }
+    }
+
+    /**
+     * Loaded document with its scratch file
+     */
+    private static class LoadedDocument implements Closeable {
+        private final PDDocument document;
+        private final File scratchFile;
+        private final RandomAccessFile scratch;
+
+        private LoadedDocument(PDDocument document, File scratchFile, RandomAccessFile scratch) {
+            this.document = document;
+            this.scratchFile = scratchFile;
+            this.scratch = scratch;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                document.close();
+            } finally {
+                if (scratch != null) {
+                    scratch.close();
+                    if (!scratchFile.delete()) {
+                        LOG.debug("Cannot delete scratch file " + scratchFile);
+                    }
+                }
+            }
+        }
+    }
+
+    private static LoadedDocument load(File file, InputStream stream) throws IOException {
+        if (!PropertyManager.getBooleanProperty(SCRATCH_FILE, false)) {
+            return new LoadedDocument(file != null ? PDDocument.load(file) : PDDocument.load(stream), null, null);
+        }
+        File scratchFile = File.createTempFile("pdf-scratch", ".tmp");
+        RandomAccessFile scratch = null;
+        try {
+            scratch = new RandomAccessFile(scratchFile, "rw");
+            PDDocument document = file != null ? PDDocument.load(file, scratch) : PDDocument.load(stream, scratch);
+            return new LoadedDocument(document, scratchFile, scratch);
+        } catch (IOException | RuntimeException e) {
+            if (scratch != null) {
+                scratch.close();
+            }
+            scratchFile.delete();
+            throw e;
+        }
+    }
+
+    private static File getPdfFile(String pdffilelocation) {
+        File pdfFile = new File(pdffilelocation);
+        if (!pdfFile.isFile()) {
+            LOG.error("Given path is no file");
+            return null;
+        }
+        return pdfFile;
+    }
+
     /**
      * Get content of pdf as string.
      *
@@ -47,17 +169,33 @@ public final class PdfUtils {
      * @return PDF content as String
      */
     public static String getStringFromPdf(String pdffilelocation) {
-        File pdfFile = new File(pdffilelocation);
-        if (!pdfFile.isFile()) {
-            LOG.error("Given path is no file");
+        return getStringFromPdf(pdffilelocation, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get content of a page range of a pdf as string.
+     *
+     * @param pdffilelocation Absolute path of file
+     * @param startPage First page, starting with 1
+     * @param endPage Last page (inclusive)
+     * @return PDF content as String
+     */
+    public static String getStringFromPdf(String pdffilelocation, int startPage, int endPage) {
+        File pdfFile = getPdfFile(pdffilelocation);
+        if (pdfFile == null) {
             return "";
         }
         try {
-            return getStringFromPdf(new FileInputStream(pdfFile));
-        } catch (FileNotFoundException e) {
+            String key = getCacheKey(TextExtractionCache.hash(pdfFile), startPage, endPage);
+            return TextExtractionCache.get(key, () -> {
+                try (LoadedDocument loadedDocument = load(pdfFile, null)) {
+                    return getText(loadedDocument.document, startPage, endPage);
+                }
+            });
+        } catch (IOException e) {
             LOG.error("Error reading pdf file", e);
+            return "";
         }
-        return "";
     }
 
     /**
@@ -67,34 +205,183 @@ public final class PdfUtils {
      * @return PDF content as String
      */
     public static String getStringFromPdf(InputStream stream) {
-        PDFParser parser = null;
-        COSDocument cosDoc = null;
-        PDDocument pdDoc = null;
-        PDFTextStripper stripper = null;
-        String parsedtext = null;
+        return getStringFromPdf(stream, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get content of a page range of a pdf as string.
+     *
+     * @param stream File stream
+     * @param startPage First page, starting with 1
+     * @param endPage Last page (inclusive)
+     * @return PDF content as String
+     */
+    public static String getStringFromPdf(InputStream stream, int startPage, int endPage) {
+        File spoolFile = null;
         try {
-            parser = new PDFParser(stream);
-
-            parser.parse();
-            cosDoc = parser.getDocument();
-            pdDoc = new PDDocument(cosDoc);
-            stripper = new PDFTextStripper();
-            parsedtext = stripper.getText(pdDoc);
-            return parsedtext;
+            // The stream is hashed while spooled to disk, so the pdf is never held in memory
+            spoolFile = File.createTempFile("pdf-stream", ".pdf");
+            String hash;
+            try (OutputStream outputStream = new FileOutputStream(spoolFile)) {
+                hash = TextExtractionCache.hash(stream, outputStream);
+            }
+            File pdfFile = spoolFile;
+            String key = getCacheKey(hash, startPage, endPage);
+            return TextExtractionCache.get(key, () -> {
+                try (LoadedDocument loadedDocument = load(pdfFile, null)) {
+                    return getText(loadedDocument.document, startPage, endPage);
+                }
+            });
         } catch (IOException e) {
             LOG.error("Error reading pdf file", e);
             return "";
         } finally {
-            try {
-                if (pdDoc != null) {
-                    pdDoc.close();
-                }
-            } catch (IOException e) {
-                LOG.debug("error closing pdf stream", e);
+            if (spoolFile != null && !spoolFile.delete()) {
+                LOG.debug("Cannot delete spool file " + spoolFile);
             }
         }
     }
 
+    /**
+     * @see TextExtractionCache#get(String, TextExtractionCache.Extractor)
+     */
+    private static String getCacheKey(String hash, int startPage, int endPage) {
+        if (startPage <= 1 && endPage == Integer.MAX_VALUE) {
+            return "pdf_" + hash;
+        }
+        return "pdf_" + hash + "_" + startPage + "-" + endPage;
+    }
+
+    private static String getText(PDDocument document, int startPage, int endPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        return stripper.getText(document);
+    }
+
+    /**
+     * Passes the text of every page to the consumer, only the text of the current page is kept in memory.
+     *
+     * @param pdffilelocation Absolute path of file
+     * @param consumer Receives the pages, returns false to stop
+     * @return FALSE if the file could not be read
+     */
+    public static boolean readPagesFromPdf(String pdffilelocation, PageTextConsumer consumer) {
+        File pdfFile = getPdfFile(pdffilelocation);
+        if (pdfFile == null) {
+            return false;
+        }
+        try (LoadedDocument loadedDocument = load(pdfFile, null)) {
+            new PageTextStripper(consumer).extract(loadedDocument.document);
+            return true;
+        } catch (IOException e) {
+            LOG.error("Error reading pdf file", e);
+            return false;
+        }
+    }
+
+    /**
+     * Passes the text of every page to the consumer, only the text of the current page is kept in memory.
+     *
+     * @param stream File stream
+     * @param consumer Receives the pages, returns false to stop
+     * @return FALSE if the stream could not be read
+     */
+    public static boolean readPagesFromPdf(InputStream stream, PageTextConsumer consumer) {
+        try (LoadedDocument loadedDocument = load(null, stream)) {
+            new PageTextStripper(consumer).extract(loadedDocument.document);
+            return true;
+        } catch (IOException e) {
+            LOG.error("Error reading pdf file", e);
+            return false;
+        }
+    }
+
+    /**
+     * Searches the pages for the text and stops at the first match.
+     * Text spanning over two pages is not found.
+     *
+     * @param pdffilelocation Absolute path of file
+     * @param text Text to search for
+     * @return Number of the first page containing the text, -1 if not found
+     */
+    public static int findPageInPdf(String pdffilelocation, String text) {
+        int[] foundPage = {-1};
+        readPagesFromPdf(pdffilelocation, (pageNumber, pageText) -> {
+            if (pageText.contains(text)) {
+                foundPage[0] = pageNumber;
+                return false;
+            }
+            return true;
+        });
+        return foundPage[0];
+    }
+
+    /**
+     * Get content of pdf as string, the page ranges are extracted in parallel.
+     * Every thread loads its own copy of the document, so this needs more memory than {@link #getStringFromPdf(String)}.
+     *
+     * @param pdffilelocation Absolute path of file
+     * @param threads Number of threads, 0 for the number of processors
+     * @return PDF content as String
+     */
+    public static String getStringFromPdfParallel(String pdffilelocation, int threads) {
+        File pdfFile = getPdfFile(pdffilelocation);
+        if (pdfFile == null) {
+            return "";
+        }
+        try {
+            String key = getCacheKey(TextExtractionCache.hash(pdfFile), 1, Integer.MAX_VALUE);
+            return TextExtractionCache.get(key, () -> getTextParallel(pdfFile, threads));
+        } catch (IOException e) {
+            LOG.error("Error reading pdf file", e);
+            return "";
+        }
+    }
+
+    private static String getTextParallel(File pdfFile, int threads) throws IOException {
+        int pageCount;
+        try (LoadedDocument loadedDocument = load(pdfFile, null)) {
+            pageCount = loadedDocument.document.getNumberOfPages();
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            threads = Math.max(1, Math.min(threads, pageCount));
+            if (threads == 1) {
+                return getText(loadedDocument.document, 1, Integer.MAX_VALUE);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> ranges = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int startPage = pageCount * i / threads + 1;
+                final int endPage = pageCount * (i + 1) / threads;
+                ranges.add(executor.submit(() -> {
+                    try (LoadedDocument loadedDocument = load(pdfFile, null)) {
+                        return getText(loadedDocument.document, startPage, endPage);
+                    }
+                }));
+            }
+            StringBuilder text = new StringBuilder();
+            for (Future<String> range : ranges) {
+                text.append(range.get());
+            }
+            return text.toString();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + pdfFile);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Hide constructor.
      */
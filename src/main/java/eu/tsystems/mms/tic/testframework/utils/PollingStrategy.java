@@ -0,0 +1,91 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines how long a {@link Timer} waits between two sequence iterations.
+ * Implementations must be stateless, since one strategy may be shared by several timers.
+ */
+public interface PollingStrategy {
+
+    /**
+     * @param runCount Number of the iteration that just failed, starting with 1
+     * @return Time to wait in nanoseconds before the next iteration
+     */
+    long getSleepTimeInNanos(int runCount);
+
+    /**
+     * Always waits the same time.
+     *
+     * @param sleepTimeInMs Time between iterations
+     */
+    static PollingStrategy fixed(long sleepTimeInMs) {
+        final long sleepTimeInNanos = TimeUnit.MILLISECONDS.toNanos(sleepTimeInMs);
+        return runCount -> sleepTimeInNanos;
+    }
+
+    /**
+     * Starts with initialSleepTimeInMs and multiplies the sleep time with multiplier after every iteration
+     * until maxSleepTimeInMs has been reached. Every sleep time is randomized by +/- jitter (0.0 - 1.0),
+     * which prevents parallel timers from polling the system under test at the same moments.
+     *
+     * @param initialSleepTimeInMs Sleep time after the first iteration
+     * @param maxSleepTimeInMs Upper bound of the sleep time
+     * @param multiplier Growth factor per iteration, must be >= 1
+     * @param jitter Relative random deviation, 0 disables jitter
+     */
+    static PollingStrategy exponential(long initialSleepTimeInMs, long maxSleepTimeInMs, double multiplier, double jitter) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be >= 1: " + multiplier);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        }
+        final long initialNanos = TimeUnit.MILLISECONDS.toNanos(initialSleepTimeInMs);
+        final long maxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(initialSleepTimeInMs, maxSleepTimeInMs));
+        return runCount -> {
+            double sleepTimeInNanos = initialNanos * Math.pow(multiplier, Math.max(0, runCount - 1));
+            sleepTimeInNanos = Math.min(sleepTimeInNanos, maxNanos);
+            if (jitter > 0) {
+                sleepTimeInNanos *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+            }
+            return (long) sleepTimeInNanos;
+        };
+    }
+
+    /**
+     * Polls fastCount times with fastSleepTimeInMs and continues with slowSleepTimeInMs.
+     * Conditions that settle quickly are detected early, long waits do not hammer the system under test.
+     *
+     * @param fastSleepTimeInMs Sleep time of the first iterations
+     * @param fastCount Number of fast iterations
+     * @param slowSleepTimeInMs Sleep time of all following iterations
+     */
+    static PollingStrategy fastFirst(long fastSleepTimeInMs, int fastCount, long slowSleepTimeInMs) {
+        final long fastNanos = TimeUnit.MILLISECONDS.toNanos(fastSleepTimeInMs);
+        final long slowNanos = TimeUnit.MILLISECONDS.toNanos(slowSleepTimeInMs);
+        return runCount -> runCount <= fastCount ? fastNanos : slowNanos;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils;
+
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared infrastructure for asynchronous {@link Timer} sequences.
+ * A single scheduler thread keeps track of the poll intervals, the iterations itself are executed by worker threads
+ * (virtual threads when the JVM supports them). Sequences waiting for their next iteration do not occupy any thread.
+ * The number of sequences in progress is limited by {@link #MAX_CONCURRENT_SEQUENCES}, further sequences are queued.
+ */
+public final class SequenceScheduler {
+
+    public static final String MAX_CONCURRENT_SEQUENCES = "tt.timer.async.max.concurrent";
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, threadFactory("Sequence-Scheduler"));
+    private static final ExecutorService WORKERS = createWorkers();
+    private static final Semaphore PERMITS = new Semaphore(PropertyManager.getIntProperty(MAX_CONCURRENT_SEQUENCES, 500));
+    private static final Queue<Runnable> PENDING = new ConcurrentLinkedQueue<>();
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private SequenceScheduler() {
+
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ExecutorService createWorkers() {
+        // Without virtual threads, the concurrency cap limits the pool size
+        return JVMUtils.createVirtualThreadPerTaskExecutor()
+                .orElseGet(() -> Executors.newCachedThreadPool(threadFactory("Sequence-Worker")));
+    }
+
+    /**
+     * Starts the sequence as soon as a permit is available. Every started sequence must call {@link #release()} when done.
+     */
+    static void start(Runnable starter) {
+        PENDING.add(starter);
+        drain();
+    }
+
+    static void release() {
+        PERMITS.release();
+        drain();
+    }
+
+    private static void drain() {
+        while (!PENDING.isEmpty() && PERMITS.tryAcquire()) {
+            Runnable starter = PENDING.poll();
+            if (starter == null) {
+                // Another thread took the starter, check again for starters added before the permit was released
+                PERMITS.release();
+                continue;
+            }
+            starter.run();
+        }
+    }
+
+    static ScheduledFuture<?> schedule(Runnable iteration, long delayInNanos) {
+        return SCHEDULER.schedule(() -> WORKERS.execute(iteration), delayInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Number of sequences waiting for a permit
+     */
+    public static int getPendingCount() {
+        return PENDING.size();
+    }
+}
@@ -22,89 +22,155 @@
  package eu.tsystems.mms.tic.testframework.utils;
 
 import eu.tsystems.mms.tic.testframework.exceptions.TimeoutException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Executes runnables exclusively per lock object. Waiters are served strictly in order of arrival by tickets,
+ * the next waiter is woken up when the lock is released. Locks of idle lock objects are removed automatically.
+ * The lock is not reentrant, a nested call for the same lock object on the same thread waits until its timeout.
+ */
 public final class Synchronize {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(Synchronize.class);
-
-    private static final Object locksObjectLocker = new Object();
-    private static final Object runsObjectLocker = new Object();
-    private static final Map<Object, Queue<Runnable>> locks = Collections.synchronizedMap(new HashMap<>());
-    private static final Map<Object, Runnable> runs = Collections.synchronizedMap(new HashMap<>());
+    private static final ConcurrentMap<Object, KeyLock> locks = new ConcurrentHashMap<>();
 
-    public static void d(final Object lockObject, Runnable runLocked, Runnable runIntermediate, int sleepTimeMS, int timeoutMS) throws InterruptedException {
-        synchronized (locksObjectLocker) {
-            // init
-            if (!locks.containsKey(lockObject)) {
-//                LOGGER.info("Init Queue for " + lockObject);
-                locks.put(lockObject, new LinkedList<>());
+    private static final class KeyLock {
+        private final ReentrantLock mutex = new ReentrantLock();
+        private final Condition turn = mutex.newCondition();
+        /**
+         * Tickets, guarded by the mutex
+         */
+        private long nextTicket = 0;
+        private long servingTicket = 0;
+        private final Set<Long> abandonedTickets = new HashSet<>();
+        /**
+         * Owner and waiters, guarded by the map entry
+         */
+        private int users = 0;
 
-//                LOGGER.info("NEXT: " + lockObject + " - " + runLocked);
-                runs.put(lockObject, runLocked);
+        /**
+         * Waits until it's the turn of a new ticket
+         *
+         * @return FALSE if the deadline has been reached
+         */
+        private boolean acquire(long deadline, long cadence, Runnable runIntermediate) throws InterruptedException {
+            final long ticket;
+            mutex.lock();
+            try {
+                ticket = nextTicket++;
+            } finally {
+                mutex.unlock();
             }
-            else {
-                // add request
-                locks.get(lockObject).add(runLocked);
-//                LOGGER.info("Queue entry added: " + lockObject + " - " + runLocked);
+            boolean acquired = false;
+            try {
+                long nextIntermediate = System.nanoTime() + cadence;
+                while (true) {
+                    mutex.lock();
+                    try {
+                        while (servingTicket != ticket) {
+                            long now = System.nanoTime();
+                            if (now - deadline >= 0) {
+                                return false;
+                            }
+                            if (now - nextIntermediate >= 0) {
+                                break;
+                            }
+                            turn.awaitNanos(Math.min(nextIntermediate - now, deadline - now));
+                        }
+                        if (servingTicket == ticket) {
+                            acquired = true;
+                            return true;
+                        }
+                    } finally {
+                        mutex.unlock();
+                    }
+                    // The ticket keeps its place while the callback runs
+                    runIntermediate.run();
+                    nextIntermediate = System.nanoTime() + cadence;
+                }
+            } finally {
+                if (!acquired) {
+                    // Timed out, interrupted or the callback failed
+                    mutex.lock();
+                    try {
+                        abandonedTickets.add(ticket);
+                        skipAbandonedTickets();
+                    } finally {
+                        mutex.unlock();
+                    }
+                }
             }
         }
 
-        /*
-        Wait for lock
-         */
-        int timeoutCounter = 0;
-        while (!isMyTurn(lockObject, runLocked)) {
-            if (timeoutCounter + sleepTimeMS > timeoutMS) {
-                throw new TimeoutException("Synchronize.d WAITING for lock timed out " + timeoutMS + " ms");
+        private void release() {
+            mutex.lock();
+            try {
+                servingTicket++;
+                skipAbandonedTickets();
+            } finally {
+                mutex.unlock();
             }
-            Thread.sleep(sleepTimeMS);
-            timeoutCounter += sleepTimeMS;
-            runIntermediate.run();
         }
 
-        /*
-        execute
-         */
-        try {
-            runs.get(lockObject).run();
-        } finally {
-            /*
-            release
-             */
-            next(lockObject);
+        private void skipAbandonedTickets() {
+            while (abandonedTickets.remove(servingTicket)) {
+                servingTicket++;
+            }
+            turn.signalAll();
         }
     }
 
-    private static boolean isMyTurn(Object lockObject, Runnable runLocked) {
-        synchronized (runsObjectLocker) {
-            if (runs.containsKey(lockObject) && runs.get(lockObject) == runLocked) {
-//                LOGGER.info(lockObject + " - " + runLocked + " - MY TURN");
-                return true;
-            }
-        }
-//        LOGGER.info(lockObject + " - " + runLocked + " - not my turn");
-        return false;
+    private Synchronize() {
+
     }
 
-    private static void next(Object lockObject) {
-        synchronized (locksObjectLocker) {
-            Queue<Runnable> queue = locks.get(lockObject);
-//            LOGGER.info("Queue " + lockObject + " has " + queue.size() + " entries");
-            if (queue.isEmpty()) {
-                locks.remove(lockObject);
-                runs.remove(lockObject);
-//                LOGGER.info("Removing Queue for " + lockObject);
+    /**
+     * Runs runLocked when no other runnable for the same lockObject is running.
+     *
+     * @param lockObject Object to synchronize on, compared by equals()
+     * @param runLocked Runs exclusively
+     * @param runIntermediate Runs every sleepTimeMS while waiting for the lock
+     * @param sleepTimeMS Cadence of runIntermediate
+     * @param timeoutMS Maximum time to wait for the lock
+     * @throws TimeoutException if the lock was not acquired in time
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    public static void d(final Object lockObject, Runnable runLocked, Runnable runIntermediate, int sleepTimeMS, int timeoutMS) throws InterruptedException {
+        final KeyLock keyLock = locks.compute(lockObject, (key, existing) -> {
+            KeyLock current = (existing == null ? new KeyLock() : existing);
+            current.users++;
+            return current;
+        });
+
+        try {
+            /*
+            Wait for lock
+             */
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMS);
+            final long cadence = TimeUnit.MILLISECONDS.toNanos(Math.max(1, sleepTimeMS));
+            if (!keyLock.acquire(deadline, cadence, runIntermediate)) {
+                throw new TimeoutException("Synchronize.d WAITING for lock timed out " + timeoutMS + " ms");
             }
-            else {
-                Runnable runnable = queue.poll();
-                runs.put(lockObject, runnable);
-//                LOGGER.info("NEXT: " + lockObject + " - " + runnable);
+
+            /*
+            execute
+             */
+            try {
+                runLocked.run();
+            } finally {
+                keyLock.release();
             }
+        } finally {
+            /*
+            release
+             */
+            locks.computeIfPresent(lockObject, (key, existing) -> --existing.users == 0 ? null : existing);
         }
     }
-
 }
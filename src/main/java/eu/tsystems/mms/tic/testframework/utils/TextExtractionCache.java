@@ -0,0 +1,325 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils;
+
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of text extracted from documents, keyed by the SHA-256 hash of the document content.
+ * Recently used texts are kept in process, limited by {@link #MEMORY_MAX_CHARS}. When {@link #DIRECTORY} is set,
+ * the texts are also stored on disk and shared by subsequent runs. The least recently used files are
+ * deleted when the directory exceeds {@link #DIRECTORY_MAX_SIZE_MB}.
+ */
+public final class TextExtractionCache {
+
+    /**
+     * Maximum number of cached characters in process, 0 disables the in process cache.
+     * The default of one million characters keeps only a few documents, rely on {@link #DIRECTORY} for larger caches.
+     */
+    public static final String MEMORY_MAX_CHARS = "tt.text.cache.memory.max.chars";
+
+    /**
+     * Directory of the disk cache, the disk cache is disabled when not set
+     */
+    public static final String DIRECTORY = "tt.text.cache.dir";
+
+    /**
+     * Maximum size of the disk cache in MB
+     */
+    public static final String DIRECTORY_MAX_SIZE_MB = "tt.text.cache.dir.max.size.mb";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextExtractionCache.class);
+
+    private static final long MAX_MEMORY_CHARS = PropertyManager.getIntProperty(MEMORY_MAX_CHARS, 1_000_000);
+    private static final long MAX_DIRECTORY_BYTES = PropertyManager.getIntProperty(DIRECTORY_MAX_SIZE_MB, 512) * 1024L * 1024L;
+    private static final String CACHE_DIRECTORY = PropertyManager.getProperty(DIRECTORY, "");
+    private static final String FILE_SUFFIX = ".txt";
+
+    private static final Map<String, String> MEMORY = new LinkedHashMap<>(16, 0.75f, true);
+    private static long memoryChars = 0;
+
+    /**
+     * Size of the disk cache, -1 until the directory has been scanned
+     */
+    private static final AtomicLong DIRECTORY_BYTES = new AtomicLong(-1);
+
+    /**
+     * Extracts the text of a document
+     */
+    public interface Extractor {
+        String extract() throws IOException;
+    }
+
+    private TextExtractionCache() {
+
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the file content
+     */
+    public static String hash(File file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            return hash(inputStream);
+        }
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the remaining stream content, the stream is not closed
+     */
+    public static String hash(InputStream inputStream) throws IOException {
+        return hash(inputStream, null);
+    }
+
+    /**
+     * @param copy Receives the stream content while it is hashed, may be NULL. The streams are not closed.
+     * @return Hex encoded SHA-256 hash of the remaining stream content
+     */
+    public static String hash(InputStream inputStream, OutputStream copy) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+            if (copy != null) {
+                copy.write(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return Hex encoded SHA-256 hash of the bytes
+     */
+    public static String hash(byte[] bytes) {
+        return toHex(createDigest().digest(bytes));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns the cached text or extracts and caches it. Failed extractions are not cached.
+     *
+     * @param key Content hash combined with everything else affecting the text, like the extractor and the page range.
+     *            Used as file name, so only letters, digits, '-' and '_' are allowed.
+     * @param extractor Extracts the text on a cache miss
+     * @return The text
+     */
+    public static String get(String key, Extractor extractor) throws IOException {
+        String text = getFromMemory(key);
+        if (text != null) {
+            return text;
+        }
+        Path directory = getDirectory();
+        if (directory != null) {
+            text = readFile(directory, key);
+            if (text != null) {
+                putIntoMemory(key, text);
+                return text;
+            }
+        }
+        text = extractor.extract();
+        putIntoMemory(key, text);
+        if (directory != null) {
+            writeFile(directory, key, text);
+        }
+        return text;
+    }
+
+    private static synchronized String getFromMemory(String key) {
+        return MEMORY.get(key);
+    }
+
+    private static synchronized void putIntoMemory(String key, String text) {
+        if (text.length() > MAX_MEMORY_CHARS) {
+            return;
+        }
+        String previous = MEMORY.put(key, text);
+        if (previous != null) {
+            memoryChars -= previous.length();
+        }
+        memoryChars += text.length();
+        Iterator<String> iterator = MEMORY.values().iterator();
+        while (memoryChars > MAX_MEMORY_CHARS && iterator.hasNext()) {
+            memoryChars -= iterator.next().length();
+            iterator.remove();
+        }
+    }
+
+    private static Path getDirectory() {
+        if (CACHE_DIRECTORY.isEmpty()) {
+            return null;
+        }
+        return Paths.get(CACHE_DIRECTORY);
+    }
+
+    private static String readFile(Path directory, String key) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        try {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            // Last modification time is the last access for the LRU eviction
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return text;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read cached text " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static void writeFile(Path directory, String key, String text) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        try {
+            Files.createDirectories(directory);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            // Concurrent readers, also of other processes, never see partially written files
+            Path tempFile = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.write(tempFile, bytes);
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            initDirectorySize(directory);
+            if (DIRECTORY_BYTES.addAndGet(bytes.length) > MAX_DIRECTORY_BYTES) {
+                evict(directory);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cached text " + file + ": " + e);
+        }
+    }
+
+    private static void initDirectorySize(Path directory) throws IOException {
+        if (DIRECTORY_BYTES.get() < 0) {
+            long size = 0;
+            for (Path file : listCacheFiles(directory)) {
+                size += sizeOf(file);
+            }
+            DIRECTORY_BYTES.compareAndSet(-1, size);
+        }
+    }
+
+    private static List<Path> listCacheFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the directory is below 90% of the maximum size.
+     * The size is recalculated, since other processes may share the directory.
+     */
+    private static synchronized void evict(Path directory) throws IOException {
+        List<Path> files = listCacheFiles(directory);
+        Map<Path, long[]> attributes = new LinkedHashMap<>();
+        long size = 0;
+        for (Path file : files) {
+            long fileSize = sizeOf(file);
+            attributes.put(file, new long[]{lastModified(file), fileSize});
+            size += fileSize;
+        }
+        files.sort(Comparator.comparingLong(file -> attributes.get(file)[0]));
+        long targetSize = MAX_DIRECTORY_BYTES / 10 * 9;
+        for (Path file : files) {
+            if (size <= targetSize) {
+                break;
+            }
+            if (Files.deleteIfExists(file)) {
+                size -= attributes.get(file)[1];
+                LOGGER.debug("Evicted cached text " + file);
+            }
+        }
+        DIRECTORY_BYTES.set(size);
+    }
+
+    /**
+     * Clears the in process cache, the disk cache is kept
+     */
+    public static synchronized void clear() {
+        MEMORY.clear();
+        memoryChars = 0;
+    }
+
+    /**
+     * @return Number of characters cached in process
+     */
+    public static synchronized long getCachedChars() {
+        return memoryChars;
+    }
+}
@@ -27,16 +27,22 @@ import eu.tsystems.mms.tic.testframework.logging.Loggable;
 import eu.tsystems.mms.tic.testframework.report.model.context.MethodContext;
 import eu.tsystems.mms.tic.testframework.report.utils.ExecutionContextController;
 import eu.tsystems.mms.tic.testframework.transfer.ThrowablePackedResponse;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Timer implements Loggable {
 
     private static final long SLEEP_TIME_IN_MS_MININMAL = 50;
     private static final long DURATION_IN_MS_MINIMAL = 100;
 
-    private long startTime = 0;
+    private long startTimeInNanos = 0;
     private long sleepTimeInMs;
     private long durationInMs;
     private String errorMessage;
+    private PollingStrategy pollingStrategy;
 
     /**
      * Creates new {@link Timer}. Will sleep for sleepTimeInMs for maximum durationInMs
@@ -53,6 +59,17 @@ public class Timer implements Loggable {
         this.durationInMs = durationInMs;
     }
 
+    /**
+     * Creates new {@link Timer} that waits between the iterations as defined by the {@link PollingStrategy}.
+     *
+     * @param pollingStrategy Defines the sleep time between iterations
+     * @param durationInMs Maximum Duration of Sleep
+     */
+    public Timer(PollingStrategy pollingStrategy, long durationInMs) {
+        this(SLEEP_TIME_IN_MS_MININMAL, durationInMs);
+        this.pollingStrategy = pollingStrategy;
+    }
+
     /**
      * The Sequence abstract to define a sequence within the run method.
      * The Type declaration defines the return object type.
@@ -64,6 +81,9 @@ public class Timer implements Loggable {
         private T returningObject = null;
         private Boolean passState = null;
         private boolean skipThrowingException = false;
+        private final Object readyMonitor = new Object();
+        private boolean ready = false;
+        private volatile Runnable readyListener = null;
 
         @Deprecated
         private boolean addThrowableToMethodContext = false;
@@ -102,6 +122,41 @@ public class Timer implements Loggable {
             this.returningObject = returningObject;
         }
 
+        /**
+         * Wakes up a {@link Timer} waiting for the next iteration of this sequence.
+         * Call this from any thread (e.g. an event listener) when the awaited condition may have changed.
+         */
+        public void signalReady() {
+            synchronized (readyMonitor) {
+                ready = true;
+                readyMonitor.notifyAll();
+            }
+            Runnable listener = readyListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+
+        /**
+         * Waits until {@link #signalReady()} has been called or the timeout has elapsed.
+         *
+         * @return TRUE if the sequence has been signaled
+         */
+        boolean awaitReady(long timeoutInNanos) throws InterruptedException {
+            final long deadline = System.nanoTime() + timeoutInNanos;
+            synchronized (readyMonitor) {
+                while (!ready) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(readyMonitor, remaining);
+                }
+                ready = false;
+                return true;
+            }
+        }
+
         /**
          * just starts the run
          */
@@ -113,25 +168,20 @@ public class Timer implements Loggable {
     }
 
     /**
-     * Execute a sequence and kill it if it times out. Be careful, for killing it uses Thread.stop(), which
-     * is deprecated, but the only way java can kill a thread.
+     * Execute a sequence in background. The sequence is polled on the shared {@link SequenceScheduler},
+     * use {@link #executeSequenceAsync(Sequence)} to wait for or cancel the result.
      *
      * @param <T> Return type.
      * @param sequence Sequence.
      */
     public <T> void executeSequenceThread(final Sequence<T> sequence) {
-
-        final Thread thread = new Thread(() -> {
-
-            try {
-                executeSequence(sequence);
-            } catch (TimeoutException e) {
-                log().warn("Timeout in executed thread.", e);
+        executeSequenceAsync(sequence).whenComplete((response, throwable) -> {
+            if (throwable instanceof TimeoutException) {
+                log().warn("Timeout in executed sequence.", throwable);
+            } else if (throwable != null && !(throwable instanceof CancellationException)) {
+                log().error("Error in executed sequence.", throwable);
             }
         });
-
-        thread.setName("Sequence_" + sequence.hashCode());
-        thread.start();
     }
 
     private void checkTimerValues() {
@@ -151,87 +201,223 @@ public class Timer implements Loggable {
      * @param <T> .
      * @param sequence .
      * @return .
+     * @throws SystemException if the waiting thread has been interrupted, the interrupt flag is restored
      */
     public <T> ThrowablePackedResponse<T> executeSequence(Sequence<T> sequence) {
         checkTimerValues();
         startTimer();
-        boolean success;
-        Throwable catchedThrowable = null;
-        int runCount = 1;
-        while (!isTimeOver()) {
-        	sequenceIteration(sequence, runCount);
-            runCount++;
+        final Execution<T> execution = new Execution<>(sequence);
+        while (!execution.isTimeOver()) {
+            if (execution.iterate()) {
+                return execution.passed();
+            }
 
-            if (success) {
-                return new ThrowablePackedResponse<T>(sequence.getReturningObject(), null, true, null);
+            long sleepTimeInNanos = execution.getSleepTimeInNanos();
+            if (sleepTimeInNanos > 0) {
+                try {
+                    if (sequence.awaitReady(sleepTimeInNanos)) {
+                        log().trace("Sequence signaled readiness, starting next iteration");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SystemException("Sequence execution interrupted after " + execution.runCount + " iterations", e);
+                }
             }
+        }
+        return execution.timedOut();
+    }
+
+    /**
+     * Executes the sequence asynchronously on the shared {@link SequenceScheduler}.
+     * No thread is blocked while waiting for the next iteration.
+     * The returned future completes exceptionally with a {@link TimeoutException} when the sequence would throw one
+     * in {@link #executeSequence(Sequence)}. Cancelling the future stops all further iterations.
+     * The timeout starts when the sequence has been started by the scheduler, not while it is queued
+     * behind {@link SequenceScheduler#MAX_CONCURRENT_SEQUENCES}.
+     *
+     * @param <T> Return type.
+     * @param sequence Sequence.
+     */
+    public <T> CompletableFuture<ThrowablePackedResponse<T>> executeSequenceAsync(final Sequence<T> sequence) {
+        checkTimerValues();
+        final AsyncExecution<T> asyncExecution = new AsyncExecution<>(sequence);
+        SequenceScheduler.start(asyncExecution::start);
+        return asyncExecution.future;
+    }
+
+    /**
+     * State of a single sequence execution, independent of the executing thread.
+     */
+    private class Execution<T> {
+        private final Sequence<T> sequence;
+        private final PollingStrategy strategy = getPollingStrategy();
+        private final Optional<MethodContext> methodContext = ExecutionContextController.getMethodContextForThread();
+        private long startTimeInNanos = System.nanoTime();
+        private final long durationInNanos = TimeUnit.MILLISECONDS.toNanos(durationInMs);
+        private Throwable catchedThrowable = null;
+        private int runCount = 0;
+
+        private Execution(Sequence<T> sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Restarts the timeout, when the execution has been waiting before the first iteration
+         */
+        private void startClock() {
+            startTimeInNanos = System.nanoTime();
+        }
+
+        private long getRemainingTimeInNanos() {
+            return durationInNanos - (System.nanoTime() - startTimeInNanos);
+        }
+
+        private boolean isTimeOver() {
+            return getRemainingTimeInNanos() < 0;
+        }
+
+        /**
+         * Never sleep beyond the deadline, the last iteration should run right before the timer is over.
+         */
+        private long getSleepTimeInNanos() {
+            return Math.min(strategy.getSleepTimeInNanos(runCount), getRemainingTimeInNanos());
+        }
 
+        /**
+         * Runs the sequence once
+         *
+         * @return TRUE if the sequence passed
+         */
+        private boolean iterate() {
+            runCount++;
             try {
-                Thread.sleep(sleepTimeInMs);
-            } catch (InterruptedException e) {
-                // ignore
+                log().trace("##### Starting Sequence Iteration #" + runCount + " #####");
+                sequence.run();
+                log().trace("Sequence Iteration #" + runCount + " executed without throwing Throwable");
+                /*
+                Look at the pass state that could be set explicitly.
+                 */
+                Boolean passState = sequence.getPassState();
+                if (passState == null) {
+                    log().trace("Sequence Iteration #" + runCount + " successful without passState");
+                    return true;
+                } else {
+                    log().trace("Sequence Iteration #" + runCount + " pass state: " + passState);
+                    return passState;
+                }
+            } catch (Throwable throwable) {
+                if (throwable instanceof OutOfMemoryError) {
+                    throw new SystemException("OOME catched", throwable);
+                } else if (throwable instanceof IllegalArgumentException) {
+                    // jump out immediately
+                    throw (IllegalArgumentException) throwable;
+                } else {
+                    catchedThrowable = throwable;
+                    log().debug("Sequence Iteration #" + runCount + " failed", throwable);
+                }
+                return false;
             }
         }
 
+        private ThrowablePackedResponse<T> passed() {
+            return new ThrowablePackedResponse<T>(sequence.getReturningObject(), null, true, null);
+        }
+
+        private ThrowablePackedResponse<T> timedOut() {
+            if (sequence.isAddThrowableToMethodContext() && catchedThrowable != null) {
+                methodContext.ifPresent(methodContext -> methodContext.addError(catchedThrowable));
+            }
+
+            // create timeout exception
+            TimeoutException timeoutException = createTimeoutException(catchedThrowable);
 
-        if (sequence.isAddThrowableToMethodContext()) {
-            addThrowableToMethodContext(catchedThrowable);
+            // give back a packed response when we have an object to give back or we have to skip throwing something
+            if (sequence.getReturningObject() != null || sequence.isSkipThrowingException()) {
+                // we return whatever we've got, catchedThrowable can also be null
+                return new ThrowablePackedResponse<T>(sequence.getReturningObject(), catchedThrowable, false, timeoutException);
+            }
+
+            // throw
+            throw timeoutException;
         }
+    }
 
-        // create timeout exception
-        TimeoutException timeoutException = createTimeoutException(catchedThrowable);
+    /**
+     * Drives an {@link Execution} by scheduling every iteration on the {@link SequenceScheduler}.
+     * Iterations of one execution never overlap, since the next one is scheduled after the previous one finished.
+     */
+    private class AsyncExecution<T> {
+        private final Execution<T> execution;
+        private final CompletableFuture<ThrowablePackedResponse<T>> future = new CompletableFuture<>();
+        private ScheduledFuture<?> nextIteration;
+
+        private AsyncExecution(Sequence<T> sequence) {
+            this.execution = new Execution<>(sequence);
+            sequence.readyListener = this::wakeUp;
+            future.whenComplete((response, throwable) -> {
+                sequence.readyListener = null;
+                synchronized (this) {
+                    // a cancelled iteration never runs, so it cannot release its permit
+                    if (nextIteration != null && nextIteration.cancel(false)) {
+                        SequenceScheduler.release();
+                    }
+                }
+            });
+        }
 
+        /**
+         * Called when a permit has been granted, time spent waiting for it does not count into the timeout
+         */
+        private void start() {
+            execution.startClock();
+            schedule(0);
+        }
 
-        // give back a packed response when we have an object to give back or we have to skip throwing something
-        if (sequence.getReturningObject() != null || sequence.isSkipThrowingException()) {
-            // we return whatever we've got, catchedThrowable can also be null
-            return new ThrowablePackedResponse<T>(sequence.getReturningObject(), catchedThrowable, false, timeoutException);
+        private synchronized void schedule(long delayInNanos) {
+            if (!future.isDone()) {
+                nextIteration = SequenceScheduler.schedule(this::iterate, delayInNanos);
+            } else {
+                SequenceScheduler.release();
+            }
         }
 
-        // throw
-        throw timeoutException;
-    }
+        private synchronized void wakeUp() {
+            if (nextIteration != null && nextIteration.cancel(false)) {
+                nextIteration = SequenceScheduler.schedule(this::iterate, 0);
+            }
+        }
+
+        private void iterate() {
+            if (future.isDone()) {
+                SequenceScheduler.release();
+                return;
+            }
+            try {
+                if (execution.iterate()) {
+                    complete(execution.passed());
+                } else if (execution.isTimeOver()) {
+                    complete(execution.timedOut());
+                } else {
+                    schedule(Math.max(0, execution.getSleepTimeInNanos()));
+                }
+            } catch (Throwable throwable) {
+                SequenceScheduler.release();
+                future.completeExceptionally(throwable);
+            }
+        }
 
-	private <T> boolean sequenceIteration(Sequence<T> sequence, int runCount)
-			throws eu.tsystems.mms.tic.testframework.utils.SystemException {
-		boolean success;
-		Throwable catchedThrowable = null;
-		try {
-		    log().trace("##### Starting Sequence Iteration #" + runCount + " #####");
-		    sequence.run();
-		    log().trace("Sequence Iteration #" + runCount + " executed without throwing Throwable");
-		    /*
-		    Look at the pass state that could be set explicitly.
-		     */
-		    Boolean passState = sequence.getPassState();
-		    if (passState == null) {
-		        log().trace("Sequence Iteration #" + runCount + " successful without passState");
-		        success = true;
-		    } else {
-		        log().trace("Sequence Iteration #" + runCount + " pass state: " + passState);
-		        success = passState;
-		    }
-		} catch (Throwable throwable) {
-		    success = false;
-
-		    if (throwable instanceof OutOfMemoryError) {
-		        throw new SystemException("OOME catched", throwable);
-		    } else if (throwable instanceof IllegalArgumentException) {
-		        // jump out immediately
-		        throw (IllegalArgumentException) throwable;
-		    } else {
-		        catchedThrowable = throwable;
-		        log().debug("Sequence Iteration #" + runCount + " failed", throwable);
-		    }
-		}
-		return success;
-	}
+        private void complete(ThrowablePackedResponse<T> response) {
+            SequenceScheduler.release();
+            future.complete(response);
+        }
+    }
 
     private TimeoutException createTimeoutException(Throwable catchedThrowable) {
                 /*
         create timeout exception
          */
-        String message = "Sequence execution timed out " + durationInMs + " ms (polling every " + sleepTimeInMs + " ms)";
+        String polling = (pollingStrategy == null ? "polling every " + sleepTimeInMs + " ms" : "adaptive polling");
+        String message = "Sequence execution timed out " + durationInMs + " ms (" + polling + ")";
         TimeoutException timeoutException;
         if (catchedThrowable != null) {
             /*
@@ -253,23 +439,33 @@ public class Timer implements Loggable {
         return timeoutException;
     }
 
-    private void addThrowableToMethodContext(Throwable catchedThrowable) {
-        if (catchedThrowable != null) {
-            ExecutionContextController.getMethodContextForThread().ifPresent(methodContext -> {
-                methodContext.addError(catchedThrowable);
-            });
-        }
-    }
-
     /**
      * starts the timer
      */
     public void startTimer() {
-        startTime = System.currentTimeMillis();
+        startTimeInNanos = System.nanoTime();
     }
 
     public boolean isTimeOver() {
-        return System.currentTimeMillis() > (startTime + durationInMs);
+        return getRemainingTimeInNanos() < 0;
+    }
+
+    private long getRemainingTimeInNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(durationInMs) - (System.nanoTime() - startTimeInNanos);
+    }
+
+    /**
+     * @return The configured {@link PollingStrategy} or a fixed strategy based on {@link #getSleepTimeInMs()}
+     */
+    public PollingStrategy getPollingStrategy() {
+        if (pollingStrategy == null) {
+            return PollingStrategy.fixed(sleepTimeInMs);
+        }
+        return pollingStrategy;
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        this.pollingStrategy = pollingStrategy;
     }
 
     public long getSleepTimeInMs() {
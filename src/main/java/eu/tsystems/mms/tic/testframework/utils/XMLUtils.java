@@ -25,16 +25,24 @@ package eu.tsystems.mms.tic.testframework.utils;
 import eu.tsystems.mms.tic.testframework.utils.xmlutils.AbstractXMLUtils;
 import eu.tsystems.mms.tic.testframework.utils.xmlutils.JDom;
 import eu.tsystems.mms.tic.testframework.utils.xmlutils.JSoup;
+import eu.tsystems.mms.tic.testframework.utils.xmlutils.StAX;
 import eu.tsystems.mms.tic.testframework.utils.xmlutils.W3cDom;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.xpath.XPath;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 import org.w3c.dom.NodeList;
@@ -52,6 +60,7 @@ public class XMLUtils extends AbstractXMLUtils {
     private static final JDom JDOM = new JDom();
     private static final W3cDom W3CDOM = new W3cDom();
     private static final JSoup JSOUP = new JSoup();
+    private static final StAX STAX = new StAX();
 
     /**
      * Accessor.
@@ -83,6 +92,15 @@ public class XMLUtils extends AbstractXMLUtils {
         return JSOUP;
     }
 
+    /**
+     * Accessor for streaming evaluation of large documents.
+     *
+     * @return .
+     */
+    public static StAX stax() {
+        return STAX;
+    }
+
     /**
      * Method to parse an xml String with xpathExpression, returning the first result converted to String.
      *
@@ -93,8 +111,7 @@ public class XMLUtils extends AbstractXMLUtils {
      */
     @Deprecated
     public static String evaluateXPath(String xml, String xpathExpression) throws XPathExpressionException {
-        XPath xPath = getXpathFactory().newXPath();
-        String out = xPath.evaluate(xpathExpression, new InputSource(new StringReader(xml)));
+        String out = compileXPath(xpathExpression).evaluate(new InputSource(new StringReader(xml)));
         return out;
     }
 
@@ -108,11 +125,86 @@ public class XMLUtils extends AbstractXMLUtils {
      */
     @Deprecated
     public static NodeList evaluateXPathNodes(String xml, String xpath) throws XPathExpressionException {
-        XPath xPath = getXpathFactory().newXPath();
-        NodeList nodeList = (NodeList) xPath.evaluate(xpath, new InputSource(new StringReader(xml)), XPathConstants.NODESET);
+        NodeList nodeList = (NodeList) compileXPath(xpath).evaluate(new InputSource(new StringReader(xml)), XPathConstants.NODESET);
         return nodeList;
     }
 
+    /**
+     * Per class JAXBContext with pooled (un)marshallers, which are not thread-safe
+     */
+    private static final class JAXBBinding {
+        private static final int MAX_IDLE = 16;
+
+        private final JAXBContext context;
+        private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+        private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+        private JAXBBinding(JAXBContext context) {
+            this.context = context;
+        }
+
+        private Marshaller borrowMarshaller() throws JAXBException {
+            Marshaller marshaller = marshallers.poll();
+            if (marshaller == null) {
+                marshaller = context.createMarshaller();
+                //for pretty-print XML in JAXB
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            }
+            return marshaller;
+        }
+
+        private void returnMarshaller(Marshaller marshaller) {
+            if (marshallers.size() < MAX_IDLE) {
+                marshallers.offer(marshaller);
+            }
+        }
+
+        private Unmarshaller borrowUnmarshaller() throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.poll();
+            return unmarshaller != null ? unmarshaller : context.createUnmarshaller();
+        }
+
+        private void returnUnmarshaller(Unmarshaller unmarshaller) {
+            if (unmarshallers.size() < MAX_IDLE) {
+                unmarshallers.offer(unmarshaller);
+            }
+        }
+    }
+
+    private static final ClassValue<JAXBBinding> JAXB_BINDINGS = new ClassValue<JAXBBinding>() {
+        @Override
+        protected JAXBBinding computeValue(Class<?> type) {
+            try {
+                return new JAXBBinding(JAXBContext.newInstance(type));
+            } catch (JAXBException e) {
+                throw new RuntimeException("Cannot create JAXB context for " + type.getName(), e);
+            }
+        }
+    };
+
+    private static <T> T unmarshal(Source source, Class<T> tClass) {
+        JAXBBinding binding = JAXB_BINDINGS.get(tClass);
+        try {
+            Unmarshaller unmarshaller = binding.borrowUnmarshaller();
+            T tObject = unmarshaller.unmarshal(source, tClass).getValue();
+            binding.returnUnmarshaller(unmarshaller);
+            return tObject;
+        } catch (JAXBException e) {
+            throw new RuntimeException("Cannot unmarshal xml to object.", e);
+        }
+    }
+
+    private static <T> void marshal(Class<T> tClass, T tObject, Result result) {
+        JAXBBinding binding = JAXB_BINDINGS.get(tClass);
+        try {
+            Marshaller marshaller = binding.borrowMarshaller();
+            marshaller.marshal(tObject, result);
+            binding.returnMarshaller(marshaller);
+        } catch (JAXBException e) {
+            throw new RuntimeException("Cannot marshal object to xml.", e);
+        }
+    }
+
     /**
      * XML to Object Mapping.
      *
@@ -121,20 +213,33 @@ public class XMLUtils extends AbstractXMLUtils {
      * @param <T>    the type.
      * @return the object.
      */
-    @SuppressWarnings("unchecked")
     @Deprecated
     public static <T> T jaxbXMLToObject(String xml, Class<T> tClass) {
-        InputStream inputStream = new ByteArrayInputStream(xml.getBytes());
+        return jaxbXMLToObject(new StringReader(xml), tClass);
+    }
 
-        try {
-            JAXBContext context = JAXBContext.newInstance(tClass);
-            Unmarshaller un = context.createUnmarshaller();
+    /**
+     * XML to Object Mapping.
+     *
+     * @param reader definition, not closed.
+     * @param tClass the class.
+     * @param <T>    the type.
+     * @return the object.
+     */
+    public static <T> T jaxbXMLToObject(Reader reader, Class<T> tClass) {
+        return unmarshal(new StreamSource(reader), tClass);
+    }
 
-            T tObject = (T) un.unmarshal(inputStream);
-            return tObject;
-        } catch (JAXBException e) {
-            throw new RuntimeException("Cannot unmarshal xml to object.", e);
-        }
+    /**
+     * XML to Object Mapping.
+     *
+     * @param inputStream definition, the encoding is taken from the xml declaration. Not closed.
+     * @param tClass      the class.
+     * @param <T>         the type.
+     * @return the object.
+     */
+    public static <T> T jaxbXMLToObject(InputStream inputStream, Class<T> tClass) {
+        return unmarshal(new StreamSource(inputStream), tClass);
     }
 
     /**
@@ -147,21 +252,33 @@ public class XMLUtils extends AbstractXMLUtils {
      */
     @Deprecated
     public static <T> String jaxbObjectToXML(Class<T> tClass, T tObject) {
-        try {
-            JAXBContext context = JAXBContext.newInstance(tClass);
-            Marshaller m = context.createMarshaller();
-            //for pretty-print XML in JAXB
-            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        StringWriter writer = new StringWriter();
+        jaxbObjectToXML(tClass, tObject, writer);
+        return writer.toString();
+    }
 
-            // Write to File
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            m.marshal(tObject, os);
+    /**
+     * Object to XML Mapping.
+     *
+     * @param tClass  the class.
+     * @param tObject the object.
+     * @param writer  receives the xml, not closed.
+     * @param <T>     the type.
+     */
+    public static <T> void jaxbObjectToXML(Class<T> tClass, T tObject, Writer writer) {
+        marshal(tClass, tObject, new StreamResult(writer));
+    }
 
-            byte[] bytes = os.toByteArray();
-            return new String(bytes);
-        } catch (JAXBException e) {
-            throw new RuntimeException("Cannot marshal object to xml.", e);
-        }
+    /**
+     * Object to XML Mapping.
+     *
+     * @param tClass       the class.
+     * @param tObject      the object.
+     * @param outputStream receives the xml in UTF-8, not closed.
+     * @param <T>          the type.
+     */
+    public static <T> void jaxbObjectToXML(Class<T> tClass, T tObject, OutputStream outputStream) {
+        marshal(tClass, tObject, new StreamResult(outputStream));
     }
 
 }
@@ -21,17 +21,31 @@
  */
  package eu.tsystems.mms.tic.testframework.utils.xmlutils;
 
+import com.google.common.collect.MapMaker;
+import eu.tsystems.mms.tic.testframework.common.PropertyManager;
 import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
-import org.apache.commons.io.IOUtils;
+import org.jdom2.input.SAXBuilder;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.DOMException;
 import org.xml.sax.SAXException;
 
 /**
@@ -44,25 +58,107 @@ public abstract class AbstractXMLUtils {
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractXMLUtils.class);
     protected static String charsetName = "UTF-8";
 
-    protected static DocumentBuilder getDocumentBuilder() {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance(
-                "org.apache.xerces.jaxp.DocumentBuilderFactoryImpl", Thread.currentThread().getContextClassLoader());
-        factory.setValidating(false);
-        factory.setNamespaceAware(false);
-        try {
-            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        } catch (ParserConfigurationException e) {
-            throw new SystemException("Error disabling loading external dtd's. Document type definitions will be loaded externally.", e);
+    /**
+     * Maximum number of compiled xPath expressions per thread
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+
+    private static DocumentBuilderFactory documentBuilderFactory;
+
+    /**
+     * Caches the DOM conversion per jsoup document instance, disabled by default
+     */
+    public static final String CACHE_MAPPED_DOCUMENTS = "tt.xml.jsoup.cache";
+
+    private static final boolean MAPPED_DOCUMENTS_CACHED = PropertyManager.getBooleanProperty(CACHE_MAPPED_DOCUMENTS, false);
+
+    /**
+     * Converted documents by jsoup document identity, released together with the jsoup document
+     */
+    private static final ConcurrentMap<Document, org.w3c.dom.Document> MAPPED_DOCUMENTS = new MapMaker().weakKeys().makeMap();
+
+    /*
+     * Parsers, xPath objects and compiled expressions are not thread-safe, so every thread reuses its own instances.
+     */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(AbstractXMLUtils::createDocumentBuilder);
+    private static final ThreadLocal<XPathFactory> XPATH_FACTORY = ThreadLocal.withInitial(XPathFactory::newInstance);
+    private static final ThreadLocal<XPath> XPATH = ThreadLocal.withInitial(() -> XPATH_FACTORY.get().newXPath());
+    private static final ThreadLocal<SAXBuilder> SAX_BUILDER = ThreadLocal.withInitial(SAXBuilder::new);
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATH_EXPRESSIONS = ThreadLocal.withInitial(
+            () -> new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            });
+
+    private static synchronized DocumentBuilder createDocumentBuilder() {
+        if (documentBuilderFactory == null) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance(
+                    "org.apache.xerces.jaxp.DocumentBuilderFactoryImpl", Thread.currentThread().getContextClassLoader());
+            factory.setValidating(false);
+            factory.setNamespaceAware(false);
+            try {
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            } catch (ParserConfigurationException e) {
+                throw new SystemException("Error disabling loading external dtd's. Document type definitions will be loaded externally.", e);
+            }
+            documentBuilderFactory = factory;
         }
         try {
-            return factory.newDocumentBuilder();
+            return documentBuilderFactory.newDocumentBuilder();
         } catch (ParserConfigurationException e) {
             throw new SystemException("Error creating a DocumentBuilder. Won't be able to parse xPath", e);
         }
     }
 
+    /**
+     * @return The reset DocumentBuilder of the current thread
+     */
+    protected static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER.get();
+        documentBuilder.reset();
+        return documentBuilder;
+    }
+
+    /**
+     * @return The XPathFactory of the current thread
+     */
     protected static XPathFactory getXpathFactory() {
-        return XPathFactory.newInstance();
+        return XPATH_FACTORY.get();
+    }
+
+    /**
+     * @return The reset XPath of the current thread
+     */
+    protected static XPath getXPath() {
+        XPath xPath = XPATH.get();
+        xPath.reset();
+        return xPath;
+    }
+
+    /**
+     * @return The SAXBuilder of the current thread
+     */
+    protected static SAXBuilder getSAXBuilder() {
+        return SAX_BUILDER.get();
+    }
+
+    /**
+     * Compiles the xPath once per thread, the expression must not be passed to other threads.
+     *
+     * @param xpath The xpath expression.
+     * @return The compiled expression.
+     * @throws XPathExpressionException
+     */
+    protected static XPathExpression compileXPath(String xpath) throws XPathExpressionException {
+        Map<String, XPathExpression> expressions = XPATH_EXPRESSIONS.get();
+        XPathExpression expression = expressions.get(xpath);
+        if (expression == null) {
+            expression = getXPath().compile(xpath);
+            expressions.put(xpath, expression);
+        }
+        return expression;
     }
 
     /**
@@ -71,19 +167,85 @@ public abstract class AbstractXMLUtils {
      * requires this w3c.dom Documents. We still load the Documents with Jsoup to utilize the loading
      * and cleaning functionality.
      *
+     * The jsoup tree is copied node by node. With {@value #CACHE_MAPPED_DOCUMENTS} enabled, the result is cached
+     * per jsoup document instance and shared by all evaluations: changes of the jsoup document after the first conversion
+     * are not reflected until {@link #removeMappedDocument(Document)} is called, and changes of returned DOM nodes
+     * are visible to later evaluations.
+     *
      * @param jsoupDocument Document to be converted.
      * @return The converted w3c.org.Document.
      * @throws IOException
      * @throws SAXException
      */
     protected static org.w3c.dom.Document mapJsoupDocumentToDomDocument(Document jsoupDocument) throws IOException, SAXException {
-        String html = jsoupDocument.outerHtml().replace("\n", "");
-        InputStream inputStream = IOUtils.toInputStream(html);
-        org.w3c.dom.Document domDocument = getDocumentBuilder().parse(inputStream);
+        if (!MAPPED_DOCUMENTS_CACHED) {
+            return convertJsoupDocument(jsoupDocument);
+        }
+        return MAPPED_DOCUMENTS.computeIfAbsent(jsoupDocument, AbstractXMLUtils::convertJsoupDocument);
+    }
 
+    /**
+     * @return TRUE if converted documents are shared between evaluations
+     */
+    protected static boolean isMappedDocumentCached() {
+        return MAPPED_DOCUMENTS_CACHED;
+    }
+
+    /**
+     * Removes the cached conversion of the jsoup document.
+     */
+    public static void removeMappedDocument(Document jsoupDocument) {
+        MAPPED_DOCUMENTS.remove(jsoupDocument);
+    }
+
+    private static org.w3c.dom.Document convertJsoupDocument(Document jsoupDocument) {
+        org.w3c.dom.Document domDocument = getDocumentBuilder().newDocument();
+        for (Node child : jsoupDocument.childNodes()) {
+            appendJsoupNode(domDocument, domDocument, child);
+        }
         return domDocument;
     }
 
+    private static void appendJsoupNode(org.w3c.dom.Document domDocument, org.w3c.dom.Node parent, Node node) {
+        if (node instanceof Element) {
+            Element element = (Element) node;
+            org.w3c.dom.Element domElement;
+            try {
+                domElement = domDocument.createElement(element.tagName());
+            } catch (DOMException e) {
+                LOGGER.debug("Skipping element <" + element.tagName() + ">: " + e.getMessage());
+                return;
+            }
+            for (Attribute attribute : element.attributes()) {
+                try {
+                    domElement.setAttribute(attribute.getKey(), attribute.getValue());
+                } catch (DOMException e) {
+                    LOGGER.debug("Skipping attribute " + attribute.getKey() + ": " + e.getMessage());
+                }
+            }
+            // A document has only one root element
+            if (parent == domDocument && domDocument.getDocumentElement() != null) {
+                domDocument.getDocumentElement().appendChild(domElement);
+            } else {
+                parent.appendChild(domElement);
+            }
+            for (Node child : element.childNodes()) {
+                appendJsoupNode(domDocument, domElement, child);
+            }
+        } else if (parent == domDocument) {
+            // Only elements and comments are allowed at document level
+            if (node instanceof Comment) {
+                domDocument.appendChild(domDocument.createComment(((Comment) node).getData()));
+            }
+        } else if (node instanceof TextNode) {
+            parent.appendChild(domDocument.createTextNode(((TextNode) node).getWholeText()));
+        } else if (node instanceof DataNode) {
+            parent.appendChild(domDocument.createTextNode(((DataNode) node).getWholeData()));
+        } else if (node instanceof Comment) {
+            parent.appendChild(domDocument.createComment(((Comment) node).getData()));
+        }
+    }
+
     public static String getCharsetName() {
         return charsetName;
     }
@@ -29,7 +29,6 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.filter.ElementFilter;
-import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 
@@ -37,8 +36,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class JDom extends AbstractXMLUtils {
 
@@ -48,6 +53,100 @@ public class JDom extends AbstractXMLUtils {
 
     private static final String LOGTEXT3 = "Changed text from element %s to %s";
 
+    /**
+     * Document property of the {@link IndexHolder}, which ties the lifetime of the index to the document.
+     * A map keyed by the document would keep it alive, because the indexed elements reference their document.
+     */
+    private static final String INDEX_PROPERTY = JDomIndex.class.getName();
+
+    /**
+     * Index of a document with enabled index, the index is empty when it has to be rebuilt.
+     * Clones share the properties of their document, so the holder also stores its owner.
+     */
+    private static final class IndexHolder {
+        private final Document owner;
+        private JDomIndex index;
+
+        private IndexHolder(Document owner) {
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Changes for {@link #applyEdits(Document, Edits)}. Edits for all elements are applied before the edits
+     * for specific element names, otherwise in the order they have been added.
+     */
+    public static class Edits {
+        private final List<Edit> allElementEdits = new ArrayList<>();
+        private final Map<String, List<Edit>> elementEdits = new HashMap<>();
+
+        private Edits add(String elementName, Edit edit) {
+            if (elementName == null) {
+                allElementEdits.add(edit);
+            } else {
+                elementEdits.computeIfAbsent(elementName, name -> new ArrayList<>()).add(edit);
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the value of all elements with the given name.
+         */
+        public Edits changeNodeValues(String elementName, String newValue) {
+            return add(elementName, new Edit(null, null, newValue));
+        }
+
+        /**
+         * Replaces the value of all elements with the given name and value.
+         */
+        public Edits changeNodeValues(String elementName, String oldValue, String newValue) {
+            return add(elementName, new Edit(null, oldValue, newValue));
+        }
+
+        /**
+         * Replaces all values of the attribute in all elements.
+         */
+        public Edits changeAttributeValues(String attributeName, String newValue) {
+            return add(null, new Edit(attributeName, null, newValue));
+        }
+
+        /**
+         * Replaces all values of the attribute matching the original value in all elements.
+         */
+        public Edits changeAttributeValues(String attributeName, String newValue, String originalValue) {
+            return add(null, new Edit(attributeName, originalValue, newValue));
+        }
+
+        /**
+         * Replaces the values of the attribute in all elements with the given name.
+         */
+        public Edits changeElementAttributeValues(String elementName, String attributeName, String newValue) {
+            return add(elementName, new Edit(attributeName, null, newValue));
+        }
+
+        /**
+         * Removes the attribute from all elements with the given name.
+         */
+        public Edits removeAttributes(String elementName, String attributeName) {
+            return add(elementName, new Edit(attributeName, null, null));
+        }
+    }
+
+    /**
+     * Change of the text (attributeName NULL) or an attribute (newValue NULL removes the attribute)
+     */
+    private static class Edit {
+        private final String attributeName;
+        private final String originalValue;
+        private final String newValue;
+
+        private Edit(String attributeName, String originalValue, String newValue) {
+            this.attributeName = attributeName;
+            this.originalValue = originalValue;
+            this.newValue = newValue;
+        }
+    }
+
     /**
      * Reads a string from a file.
      *
@@ -81,9 +180,8 @@ public class JDom extends AbstractXMLUtils {
      */
     public Document createDocumentFromString(String source) throws JDOMException, IOException {
         Document doc = null;
-        SAXBuilder builder = new SAXBuilder();
         StringReader reader = new StringReader(source);
-        doc = builder.build(reader);
+        doc = getSAXBuilder().build(reader);
         return doc;
     }
 
@@ -98,7 +196,7 @@ public class JDom extends AbstractXMLUtils {
     public Document createDocumentFromFile(String xmlFile) throws JDOMException, IOException {
         Document doc = null;
         File file = new File(xmlFile);
-        doc = new SAXBuilder().build(file);
+        doc = getSAXBuilder().build(file);
         return doc;
     }
 
@@ -126,7 +224,7 @@ public class JDom extends AbstractXMLUtils {
     public Document addNode(Document doc, String elementName, String newElement, String newElementValue, String... attributes) {
         Element rootElement = doc.getRootElement();
         LOGGER.debug("Root: " + rootElement);
-        Element element = findElement(rootElement, elementName);
+        Element element = findFirstElement(doc, elementName);
         LOGGER.debug("Element: " + element);
         Element nElement = new Element(newElement, element.getNamespace());
         LOGGER.debug(String.format("Add node '%s' to parent node '%s'.", newElement, elementName));
@@ -141,6 +239,7 @@ public class JDom extends AbstractXMLUtils {
             nElement.setAttribute(att1);
         }
         element.addContent(nElement);
+        invalidateIndex(doc);
         return doc;
     }
 
@@ -153,9 +252,8 @@ public class JDom extends AbstractXMLUtils {
      * @return Neues Document
      */
     public Document changeNodeValue(Document doc, String elementName, String newValue) {
-        Element rootElement = doc.getRootElement();
-        Element element = findElement(rootElement, elementName);
-        element.setText(newValue);
+        Element element = findFirstElement(doc, elementName);
+        setText(doc, element, newValue);
         LOGGER.debug(String.format(LOGTEXT3, element.getName(), newValue));
 
         return doc;
@@ -171,10 +269,10 @@ public class JDom extends AbstractXMLUtils {
      * @return the document
      */
     public Document changeNodeValue(Document doc, String elementName, String oldValue, String newValue) {
-        List<Element> elements = findAllElements(doc.getRootElement(), elementName);
+        List<Element> elements = findAllElements(doc, elementName);
         for (Element element : elements) {
             if (element.getText().equals(oldValue)) {
-                element.setText(newValue);
+                setText(doc, element, newValue);
                 LOGGER.debug(String.format(LOGTEXT3, element.getName(), newValue));
             }
         }
@@ -191,9 +289,9 @@ public class JDom extends AbstractXMLUtils {
      * @return the document
      */
     public Document changeAllNodeValues(Document doc, String elementName, String newValue) {
-        List<Element> elements = findAllElements(doc.getRootElement(), elementName);
+        List<Element> elements = findAllElements(doc, elementName);
         for (Element element : elements) {
-            element.setText(newValue);
+            setText(doc, element, newValue);
         }
 
         return doc;
@@ -210,14 +308,7 @@ public class JDom extends AbstractXMLUtils {
         if (doc == null || nodeName == null) {
             return false;
         }
-        Element root = doc.getRootElement(); //
-        ElementFilter filter = new ElementFilter(nodeName);
-        for (Element element : root.getDescendants(filter)) {
-            if (nodeName.equals(element.getName())) {
-                return true;
-            }
-        }
-        return false;
+        return findFirstElement(doc, nodeName) != null;
     }
 
     /**
@@ -231,8 +322,7 @@ public class JDom extends AbstractXMLUtils {
         if (doc == null || nodeName == null) {
             return null;
         }
-        Element rootElement = doc.getRootElement();
-        Element element = findElement(rootElement, nodeName);
+        Element element = findFirstElement(doc, nodeName);
         if (element == null) {
             return null;
         }
@@ -249,9 +339,9 @@ public class JDom extends AbstractXMLUtils {
      * @return Neues Document
      */
     public Document addAttribute(Document doc, String elementName, String newAttributeName, String newAttributeValue) {
-        Element rootElement = doc.getRootElement();
-        Element element = findElement(rootElement, elementName);
+        Element element = findFirstElement(doc, elementName);
         element.setAttribute(newAttributeName, newAttributeValue);
+        invalidateAttributeIndex(doc);
         return doc;
     }
 
@@ -264,8 +354,7 @@ public class JDom extends AbstractXMLUtils {
      * @return true - Attribute exists in the element, false - Attribut doesn't exist
      */
     public boolean isExistsAttribute(Document doc, String elementName, String attributeName) {
-        Element rootElement = doc.getRootElement();
-        Element element = findElement(rootElement, elementName);
+        Element element = findFirstElement(doc, elementName);
 
         return element.getAttribute(attributeName) != null;
     }
@@ -279,11 +368,8 @@ public class JDom extends AbstractXMLUtils {
      * @return neues Document
      */
     public Document changeAttributeValues(Document doc, String attributeName, String newValue) {
-        Element rootElement = doc.getRootElement();
-        Element rootEdited = changeAttributeValueRecursive(rootElement,
-                attributeName, newValue, null);
-        doc.removeContent(rootElement);
-        doc.addContent(rootEdited);
+        changeAttributeValueRecursive(doc.getRootElement(), attributeName, newValue, null);
+        invalidateAttributeIndex(doc);
         return doc;
     }
 
@@ -299,11 +385,8 @@ public class JDom extends AbstractXMLUtils {
      */
     public Document changeAttributeValues(Document doc, String attributeName, String newValue,
             String originalValue) {
-        Element rootElement = doc.getRootElement();
-        Element rootEdited = changeAttributeValueRecursive(rootElement,
-                attributeName, newValue, originalValue);
-        doc.removeContent(rootElement);
-        doc.addContent(rootEdited);
+        changeAttributeValueRecursive(doc.getRootElement(), attributeName, newValue, originalValue);
+        invalidateAttributeIndex(doc);
         return doc;
     }
 
@@ -317,9 +400,9 @@ public class JDom extends AbstractXMLUtils {
      * @return neues Document
      */
     public Document changeAttributeValue(Document doc, String elementName, String attributeName, String newValue) {
-        Element rootElement = doc.getRootElement();
-        Element element = findElement(rootElement, elementName);
+        Element element = findFirstElement(doc, elementName);
         element.getAttribute(attributeName).setValue(newValue);
+        invalidateAttributeIndex(doc);
         return doc;
     }
 
@@ -333,9 +416,224 @@ public class JDom extends AbstractXMLUtils {
      */
     public Document removeAttribute(Document doc, String elementName, String attributeName) {
         removeAttributeRecursive(doc.getRootElement(), elementName, attributeName);
+        invalidateAttributeIndex(doc);
+        return doc;
+    }
+
+    /**
+     * Applies all edits in a single traversal of the document, including the root element.
+     * Unlike {@link #removeAttribute(Document, String, String)}, attributes are also removed from nested elements with the same name.
+     *
+     * <pre>
+     * jdom.applyEdits(doc, new JDom.Edits()
+     *      .changeNodeValues("customerId", "4711")
+     *      .changeAttributeValues("currency", "EUR", "USD")
+     *      .removeAttributes("order", "signature"));
+     * </pre>
+     *
+     * @param doc Document
+     * @param edits The changes
+     * @return the document
+     */
+    public Document applyEdits(Document doc, Edits edits) {
+        boolean structureChanged = false;
+        boolean attributesChanged = false;
+        int changes = 0;
+        Deque<Element> elements = new ArrayDeque<>();
+        elements.push(doc.getRootElement());
+        while (!elements.isEmpty()) {
+            Element element = elements.pop();
+            List<Edit> specificEdits = edits.elementEdits.getOrDefault(element.getName(), Collections.emptyList());
+            for (List<Edit> editList : Arrays.asList(edits.allElementEdits, specificEdits)) {
+                for (Edit edit : editList) {
+                    if (edit.attributeName == null) {
+                        if (edit.originalValue == null || element.getText().equals(edit.originalValue)) {
+                            structureChanged |= !element.getChildren().isEmpty();
+                            element.setText(edit.newValue);
+                            changes++;
+                        }
+                    } else if (changeAttribute(element, edit)) {
+                        attributesChanged = true;
+                        changes++;
+                    }
+                }
+            }
+            List<Element> children = element.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                elements.push(children.get(i));
+            }
+        }
+        LOGGER.debug("Applied " + changes + " edits");
+        if (structureChanged) {
+            invalidateIndex(doc);
+        } else if (attributesChanged) {
+            invalidateAttributeIndex(doc);
+        }
         return doc;
     }
 
+    private static boolean changeAttribute(Element element, Edit edit) {
+        if (!element.hasAttributes()) {
+            return false;
+        }
+        boolean changed = false;
+        List<Attribute> attributes = element.getAttributes();
+        for (int i = attributes.size() - 1; i >= 0; i--) {
+            Attribute att = attributes.get(i);
+            if (att.getName().equals(edit.attributeName)
+                    && (edit.originalValue == null || att.getValue().equals(edit.originalValue))) {
+                if (edit.newValue == null) {
+                    element.removeAttribute(att);
+                } else {
+                    att.setValue(edit.newValue);
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Enables an index of the elements by name and attribute values for the lookups of this class.
+     * The index is updated by the changes of this class. After changing the document directly,
+     * call {@link #invalidateIndex(Document)}.
+     * The index is stored in the properties of the document, which are shared with its clones:
+     * enabling the index of a clone disables the index of the original document.
+     *
+     * @param doc Document
+     * @return the document
+     */
+    public Document enableIndex(Document doc) {
+        if (getIndexHolder(doc) == null) {
+            doc.setProperty(INDEX_PROPERTY, new IndexHolder(doc));
+        }
+        return doc;
+    }
+
+    /**
+     * Rebuilds the index of the document on the next lookup, if enabled.
+     *
+     * @param doc Document
+     */
+    public void invalidateIndex(Document doc) {
+        IndexHolder holder = getIndexHolder(doc);
+        if (holder != null) {
+            holder.index = null;
+        }
+    }
+
+    /**
+     * @param doc Document
+     */
+    public void disableIndex(Document doc) {
+        if (getIndexHolder(doc) != null) {
+            doc.setProperty(INDEX_PROPERTY, null);
+        }
+    }
+
+    /**
+     * @return NULL if the index is not enabled for this document
+     */
+    private static IndexHolder getIndexHolder(Document doc) {
+        Object holder = doc.getProperty(INDEX_PROPERTY);
+        if (holder instanceof IndexHolder && ((IndexHolder) holder).owner == doc) {
+            return (IndexHolder) holder;
+        }
+        return null;
+    }
+
+    private static void invalidateAttributeIndex(Document doc) {
+        IndexHolder holder = getIndexHolder(doc);
+        if (holder != null && holder.index != null) {
+            holder.index.invalidateAttributes();
+        }
+    }
+
+    /**
+     * @return NULL if the index is not enabled
+     */
+    private static JDomIndex getIndex(Document doc) {
+        IndexHolder holder = getIndexHolder(doc);
+        if (holder == null) {
+            return null;
+        }
+        if (holder.index == null) {
+            holder.index = new JDomIndex(doc);
+        }
+        return holder.index;
+    }
+
+    /**
+     * Sets the text of the element, which replaces its child elements.
+     */
+    private void setText(Document doc, Element element, String text) {
+        boolean hadChildren = !element.getChildren().isEmpty();
+        element.setText(text);
+        if (hadChildren) {
+            invalidateIndex(doc);
+        }
+    }
+
+    /**
+     * Find all descendants of the root element with the given name.
+     *
+     * @param doc Document
+     * @param elementName Element name
+     * @return The elements in document order
+     */
+    public List<Element> findElements(Document doc, String elementName) {
+        return Collections.unmodifiableList(findAllElements(doc, elementName));
+    }
+
+    /**
+     * Find all descendants of the root element with the given name and attribute value.
+     *
+     * @param doc Document
+     * @param elementName Element name
+     * @param attributeName Attribute name
+     * @param attributeValue Attribute value
+     * @return The elements in document order
+     */
+    public List<Element> findElements(Document doc, String elementName, String attributeName, String attributeValue) {
+        JDomIndex index = getIndex(doc);
+        if (index != null) {
+            List<Element> elements = index.getElements(elementName, attributeName, attributeValue);
+            if (elements.isEmpty() || index.isAttached(elements.get(0), doc)) {
+                return elements;
+            }
+            invalidateIndex(doc);
+            return findElements(doc, elementName, attributeName, attributeValue);
+        }
+        List<Element> elements = new ArrayList<>();
+        for (Element element : findAllElements(doc.getRootElement(), elementName)) {
+            if (attributeValue.equals(element.getAttributeValue(attributeName))) {
+                elements.add(element);
+            }
+        }
+        return Collections.unmodifiableList(elements);
+    }
+
+    private List<Element> findAllElements(Document doc, String elementName) {
+        JDomIndex index = getIndex(doc);
+        if (index != null) {
+            List<Element> elements = index.getElements(elementName);
+            if (elements.isEmpty() || index.isAttached(elements.get(0), doc)) {
+                return elements;
+            }
+            invalidateIndex(doc);
+            return getIndex(doc).getElements(elementName);
+        }
+        return findAllElements(doc.getRootElement(), elementName);
+    }
+
+    private Element findFirstElement(Document doc, String elementName) {
+        if (getIndex(doc) != null) {
+            List<Element> elements = findAllElements(doc, elementName);
+            return elements.isEmpty() ? null : elements.get(0);
+        }
+        return findElement(doc.getRootElement(), elementName);
+    }
+
     /**
      * Find all elements in a root object via filtering.
      *
@@ -414,18 +712,8 @@ public class JDom extends AbstractXMLUtils {
             }
         }
 
-        List<Element> children = element.getChildren();
-        List<Element> newChildren = new ArrayList<Element>();
-        int childrenCount = children.size();
-        if (childrenCount > 0) {
-            for (Element child : children) {
-                newChildren.add(changeAttributeValueRecursive(child,
-                        attributeName, newValue, originalValue));
-            }
-        }
-        if (childrenCount > 0) {
-            element.removeContent();
-            element.addContent(newChildren);
+        for (Element child : element.getChildren()) {
+            changeAttributeValueRecursive(child, attributeName, newValue, originalValue);
         }
         return element;
     }
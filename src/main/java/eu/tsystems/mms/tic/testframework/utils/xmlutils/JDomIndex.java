@@ -0,0 +1,90 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils.xmlutils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.filter.Filters;
+
+/**
+ * Elements of a JDom document by name, and by name and attribute value, in document order.
+ * The attribute index is built on first use per element and attribute name.
+ * The index does not notice changes of the document, see {@link JDom#invalidateIndex(Document)}.
+ */
+final class JDomIndex {
+
+    private final Map<String, List<Element>> elementsByName = new HashMap<>();
+    private Map<String, Map<String, List<Element>>> elementsByAttribute = new HashMap<>();
+
+    JDomIndex(Document document) {
+        for (Element element : document.getRootElement().getDescendants(Filters.element())) {
+            elementsByName.computeIfAbsent(element.getName(), name -> new ArrayList<>()).add(element);
+        }
+    }
+
+    /**
+     * @return Descendants of the root element with the given name
+     */
+    List<Element> getElements(String name) {
+        List<Element> elements = elementsByName.get(name);
+        return elements == null ? Collections.emptyList() : Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * @return Descendants of the root element with the given name and attribute value
+     */
+    List<Element> getElements(String name, String attributeName, String attributeValue) {
+        Map<String, List<Element>> elementsByValue = elementsByAttribute.computeIfAbsent(name + '\u0000' + attributeName, key -> {
+            Map<String, List<Element>> map = new HashMap<>();
+            for (Element element : getElements(name)) {
+                String value = element.getAttributeValue(attributeName);
+                if (value != null) {
+                    map.computeIfAbsent(value, v -> new ArrayList<>()).add(element);
+                }
+            }
+            return map;
+        });
+        List<Element> elements = elementsByValue.get(attributeValue);
+        return elements == null ? Collections.emptyList() : Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Drops the attribute index after attribute values have been changed
+     */
+    void invalidateAttributes() {
+        if (!elementsByAttribute.isEmpty()) {
+            elementsByAttribute = new HashMap<>();
+        }
+    }
+
+    /**
+     * Detects elements removed from the document without invalidating the index
+     */
+    boolean isAttached(Element element, Document document) {
+        return element.getDocument() == document;
+    }
+}
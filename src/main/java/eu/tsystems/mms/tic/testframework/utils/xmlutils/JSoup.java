@@ -80,9 +80,15 @@ public class JSoup extends AbstractXMLUtils {
      * @throws SAXException
      */
     public String evaluateXPath(Document document, String xpath) throws XPathExpressionException, IOException, SAXException {
-        XPathExpression xPathExpression = getXpathFactory().newXPath().compile(xpath);
+        XPathExpression xPathExpression = compileXPath(xpath);
         org.w3c.dom.Document mappedDocument = mapJsoupDocumentToDomDocument(document);
-        return xPathExpression.evaluate(mappedDocument);
+        if (!isMappedDocumentCached()) {
+            return xPathExpression.evaluate(mappedDocument);
+        }
+        // The mapped document is shared and the DOM implementation does not support concurrent reads
+        synchronized (mappedDocument) {
+            return xPathExpression.evaluate(mappedDocument);
+        }
     }
 
     /**
@@ -90,15 +96,21 @@ public class JSoup extends AbstractXMLUtils {
      *
      * @param document The document to parse.
      * @param xpath    The xpath expression to parse with.
-     * @return A List of Nodes that fit the given xpath.
+     * @return A List of Nodes that fit the given xpath. With {@value #CACHE_MAPPED_DOCUMENTS} enabled, the nodes belong to
+     * the cached DOM document shared with other evaluations and must neither be modified nor read concurrently.
      * @throws XPathExpressionException
      * @throws IOException
      * @throws SAXException
      */
     public NodeList evaluateXPathNodes(Document document, String xpath) throws XPathExpressionException, IOException, SAXException {
-        XPathExpression xPathExpression = getXpathFactory().newXPath().compile(xpath);
+        XPathExpression xPathExpression = compileXPath(xpath);
         org.w3c.dom.Document mappedDocument = mapJsoupDocumentToDomDocument(document);
-        return (NodeList) xPathExpression.evaluate(mappedDocument, XPathConstants.NODESET);
+        if (!isMappedDocumentCached()) {
+            return (NodeList) xPathExpression.evaluate(mappedDocument, XPathConstants.NODESET);
+        }
+        synchronized (mappedDocument) {
+            return (NodeList) xPathExpression.evaluate(mappedDocument, XPathConstants.NODESET);
+        }
     }
 
 }
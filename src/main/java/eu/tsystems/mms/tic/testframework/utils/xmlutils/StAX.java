@@ -0,0 +1,325 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils.xmlutils;
+
+import eu.tsystems.mms.tic.testframework.exceptions.SystemException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * Evaluates xPaths on a single pass over the document without building a tree, for documents too large for {@link W3cDom}.
+ * Only a subset of xPath is supported:
+ * <ul>
+ *     <li>Absolute child and descendant steps with element names or *: /export/items//item</li>
+ *     <li>Attribute predicates: //item[@type='book'][@id], //item[@state!='deleted']</li>
+ *     <li>Attribute values or direct text as last step: //item/@id, //item/name/text()</li>
+ * </ul>
+ * Without @attribute or text(), the string value of the matching elements is returned, which is buffered until the end
+ * of the element. Apart from that, memory usage does not depend on the size of the document.
+ */
+public class StAX extends AbstractXMLUtils {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Streams the results of the xPath in document order. The file is read lazily,
+     * close the stream when not consuming it completely.
+     *
+     * @param file  The xml file.
+     * @param xpath The xpath expression of the supported subset.
+     * @return Lazy stream of the results
+     * @throws XPathExpressionException If the xPath is not supported
+     * @throws IOException
+     */
+    public Stream<String> streamXPath(Path file, String xpath) throws XPathExpressionException, IOException {
+        StreamingXPath streamingXPath = StreamingXPath.compile(xpath);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return streamXPath(Channels.newInputStream(channel), streamingXPath, file.toString());
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @see #streamXPath(Path, String)
+     */
+    public Stream<String> streamXPath(File file, String xpath) throws XPathExpressionException, IOException {
+        return streamXPath(file.toPath(), xpath);
+    }
+
+    /**
+     * Streams the results of the xPath in document order. The input stream is closed together with the stream.
+     *
+     * @param inputStream The xml input, the encoding is taken from the xml declaration.
+     * @param xpath       The xpath expression of the supported subset.
+     * @return Lazy stream of the results
+     * @throws XPathExpressionException If the xPath is not supported
+     */
+    public Stream<String> streamXPath(InputStream inputStream, String xpath) throws XPathExpressionException {
+        return streamXPath(inputStream, StreamingXPath.compile(xpath), "input stream");
+    }
+
+    /**
+     * Method to parse a xml file with xpath, returning the first result. Reading stops at the first result.
+     *
+     * @param file  The xml file.
+     * @param xpath The xpath expression of the supported subset.
+     * @return The first result, or an empty string like {@link W3cDom#evaluateXPath(org.w3c.dom.Document, String)}
+     * @throws XPathExpressionException If the xPath is not supported
+     * @throws IOException
+     */
+    public String evaluateXPath(File file, String xpath) throws XPathExpressionException, IOException {
+        try (Stream<String> results = streamXPath(file, xpath)) {
+            Optional<String> first = results.findFirst();
+            return first.orElse("");
+        }
+    }
+
+    private Stream<String> streamXPath(InputStream inputStream, StreamingXPath xPath, String source) {
+        XMLStreamReader reader;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+        } catch (XMLStreamException e) {
+            closeQuietly(inputStream);
+            throw new SystemException("Cannot read xml from " + source, e);
+        }
+        XPathIterator iterator = new XPathIterator(reader, inputStream, xPath, source);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.debug("Cannot close " + closeable, e);
+        }
+    }
+
+    /**
+     * Result of a matching element, completed at the end of the element
+     */
+    private static final class Match {
+        private final int depth;
+        private final StringBuilder text;
+        private String value;
+
+        private Match(int depth) {
+            this.depth = depth;
+            this.text = new StringBuilder();
+        }
+
+        private Match(String value) {
+            this.depth = -1;
+            this.text = null;
+            this.value = value;
+        }
+    }
+
+    private static final class XPathIterator implements Iterator<String> {
+        private final XMLStreamReader reader;
+        private final Closeable input;
+        private final StreamingXPath xPath;
+        private final List<StreamingXPath.Step> steps;
+        private final String source;
+        private final long matchBit;
+        /**
+         * Bit i is set when the first i steps match the path to the element at this depth
+         */
+        private long[] states = new long[64];
+        private int depth = 0;
+        /**
+         * Results in document order, not yet returned
+         */
+        private final Deque<Match> pending = new ArrayDeque<>();
+        /**
+         * Matches of elements not yet ended, innermost last
+         */
+        private final Deque<Match> open = new ArrayDeque<>();
+        private boolean closed = false;
+
+        private XPathIterator(XMLStreamReader reader, Closeable input, StreamingXPath xPath, String source) {
+            this.reader = reader;
+            this.input = input;
+            this.xPath = xPath;
+            this.steps = xPath.getSteps();
+            this.source = source;
+            this.matchBit = 1L << steps.size();
+            states[0] = 1L;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (pending.isEmpty() || pending.peekFirst().value == null) {
+                    if (closed || !reader.hasNext()) {
+                        close();
+                        return !pending.isEmpty();
+                    }
+                    handleEvent(reader.next());
+                }
+                return true;
+            } catch (XMLStreamException e) {
+                close();
+                throw new SystemException("Cannot evaluate xPath " + xPath.getExpression() + " on " + source, e);
+            }
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.pollFirst().value;
+        }
+
+        private void handleEvent(int event) throws XMLStreamException {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    for (Match match : open) {
+                        if (xPath.getTarget() == StreamingXPath.Target.ELEMENT || match.depth == depth) {
+                            match.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void startElement() throws XMLStreamException {
+            long parentState = states[depth];
+            long state = 0;
+            for (int i = 0; i < steps.size(); i++) {
+                if ((parentState & (1L << i)) == 0) {
+                    continue;
+                }
+                StreamingXPath.Step step = steps.get(i);
+                if (step.isDescendant()) {
+                    state |= 1L << i;
+                }
+                if (step.matches(reader)) {
+                    state |= 1L << (i + 1);
+                }
+            }
+
+            if (state == 0 && open.isEmpty()) {
+                // Nothing below this element can match
+                skipElement();
+                return;
+            }
+
+            depth++;
+            if (depth == states.length) {
+                states = Arrays.copyOf(states, depth * 2);
+            }
+            states[depth] = state;
+
+            if ((state & matchBit) != 0) {
+                if (xPath.getTarget() == StreamingXPath.Target.ATTRIBUTE) {
+                    String value = StreamingXPath.getAttributeValue(reader, xPath.getAttribute());
+                    if (value != null) {
+                        pending.addLast(new Match(value));
+                    }
+                } else {
+                    Match match = new Match(depth);
+                    pending.addLast(match);
+                    open.addLast(match);
+                }
+            }
+        }
+
+        private void endElement() {
+            Match match = open.peekLast();
+            if (match != null && match.depth == depth) {
+                open.pollLast();
+                match.value = match.text.toString();
+            }
+            depth--;
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int level = 1;
+            while (level > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    level++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    level--;
+                }
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                LOGGER.debug("Cannot close xml reader of " + source, e);
+            }
+            closeQuietly(input);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Testerra
+ *
+ * (C) 2020,  Peter Lehmann, T-Systems Multimedia Solutions GmbH, Deutsche Telekom AG
+ *
+ * Deutsche Telekom AG and all other contributors /
+ * copyright owners license this file to you under the Apache
+ * License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package eu.tsystems.mms.tic.testframework.utils.xmlutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * Compiled xPath of the subset which can be evaluated on a single pass over a StAX event stream:
+ * absolute child (/) and descendant (//) steps with element names or *, attribute predicates
+ * ([@name], [@name='value'], [@name!='value']) and an optional last step @attribute or text().
+ */
+final class StreamingXPath {
+
+    enum Target {
+        /**
+         * String value of the matching elements
+         */
+        ELEMENT,
+        /**
+         * Value of an attribute of the matching elements
+         */
+        ATTRIBUTE,
+        /**
+         * Direct text of the matching elements
+         */
+        TEXT
+    }
+
+    static final class Step {
+        private final boolean descendant;
+        /**
+         * NULL for any element
+         */
+        private final String name;
+        private final List<Predicate> predicates = new ArrayList<>();
+
+        private Step(boolean descendant, String name) {
+            this.descendant = descendant;
+            this.name = name;
+        }
+
+        boolean isDescendant() {
+            return descendant;
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            if (name != null && !name.equals(getName(reader.getPrefix(), reader.getLocalName()))) {
+                return false;
+            }
+            for (Predicate predicate : predicates) {
+                if (!predicate.matches(reader)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Predicate {
+        private final String attribute;
+        /**
+         * NULL when only the existence of the attribute is checked
+         */
+        private final String value;
+        private final boolean negated;
+
+        private Predicate(String attribute, String value, boolean negated) {
+            this.attribute = attribute;
+            this.value = value;
+            this.negated = negated;
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            String actual = getAttributeValue(reader, attribute);
+            if (value == null) {
+                return actual != null;
+            }
+            return actual != null && value.equals(actual) != negated;
+        }
+    }
+
+    private final String expression;
+    private final List<Step> steps = new ArrayList<>();
+    private Target target = Target.ELEMENT;
+    private String attribute;
+
+    private StreamingXPath(String expression) {
+        this.expression = expression;
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    List<Step> getSteps() {
+        return steps;
+    }
+
+    Target getTarget() {
+        return target;
+    }
+
+    String getAttribute() {
+        return attribute;
+    }
+
+    static String getName(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+
+    static String getAttributeValue(XMLStreamReader reader, String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (name.equals(getName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    static StreamingXPath compile(String expression) throws XPathExpressionException {
+        StreamingXPath xPath = new StreamingXPath(expression);
+        String path = expression.trim();
+        int pos = 0;
+        while (pos < path.length()) {
+            boolean descendant;
+            if (path.startsWith("//", pos)) {
+                descendant = true;
+                pos += 2;
+            } else if (path.startsWith("/", pos)) {
+                descendant = false;
+                pos += 1;
+            } else if (pos == 0) {
+                descendant = false;
+            } else {
+                throw unsupported(expression, pos);
+            }
+
+            int end = findStepEnd(path, pos);
+            String nodeTest = path.substring(pos, end).trim();
+            if (nodeTest.startsWith("@") || nodeTest.equals("text()")) {
+                if (end < path.length()) {
+                    throw unsupported(expression, end);
+                }
+                // //@name and //text() apply to any descendant element
+                if (descendant) {
+                    xPath.steps.add(new Step(true, null));
+                }
+                if (xPath.steps.isEmpty()) {
+                    throw unsupported(expression, pos);
+                }
+                if (nodeTest.startsWith("@")) {
+                    xPath.target = Target.ATTRIBUTE;
+                    xPath.attribute = requireName(expression, nodeTest.substring(1).trim(), pos);
+                } else {
+                    xPath.target = Target.TEXT;
+                }
+                return xPath;
+            }
+
+            Step step = new Step(descendant, nodeTest.equals("*") ? null : requireName(expression, nodeTest, pos));
+            pos = end;
+            while (pos < path.length() && path.charAt(pos) == '[') {
+                int close = findPredicateEnd(path, pos);
+                if (close < 0) {
+                    throw unsupported(expression, pos);
+                }
+                step.predicates.add(parsePredicate(expression, path.substring(pos + 1, close).trim(), pos));
+                pos = close + 1;
+            }
+            xPath.steps.add(step);
+        }
+        if (xPath.steps.isEmpty()) {
+            throw unsupported(expression, 0);
+        }
+        if (xPath.steps.size() > 62) {
+            throw new XPathExpressionException("Too many steps for streaming evaluation: " + expression);
+        }
+        return xPath;
+    }
+
+    private static int findStepEnd(String path, int pos) {
+        int end = pos;
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '[') {
+            end++;
+        }
+        return end;
+    }
+
+    private static int findPredicateEnd(String path, int pos) {
+        char quote = 0;
+        for (int i = pos + 1; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ']') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Predicate parsePredicate(String expression, String predicate, int pos) throws XPathExpressionException {
+        if (!predicate.startsWith("@")) {
+            throw unsupported(expression, pos);
+        }
+        boolean negated = false;
+        int operator = predicate.indexOf("!=");
+        int valueStart = operator + 2;
+        if (operator >= 0) {
+            negated = true;
+        } else {
+            operator = predicate.indexOf('=');
+            valueStart = operator + 1;
+        }
+        if (operator < 0) {
+            return new Predicate(requireName(expression, predicate.substring(1).trim(), pos), null, false);
+        }
+        String name = requireName(expression, predicate.substring(1, operator).trim(), pos);
+        String literal = predicate.substring(valueStart).trim();
+        if (literal.length() < 2 || (literal.charAt(0) != '\'' && literal.charAt(0) != '"') || literal.charAt(literal.length() - 1) != literal.charAt(0)) {
+            throw unsupported(expression, pos);
+        }
+        return new Predicate(name, literal.substring(1, literal.length() - 1), negated);
+    }
+
+    private static String requireName(String expression, String name, int pos) throws XPathExpressionException {
+        if (name.isEmpty()) {
+            throw unsupported(expression, pos);
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':')) {
+                throw unsupported(expression, pos);
+            }
+        }
+        return name;
+    }
+
+    private static XPathExpressionException unsupported(String expression, int pos) {
+        return new XPathExpressionException("Unsupported xPath for streaming evaluation at position " + pos + ": " + expression);
+    }
+}
@@ -23,15 +23,15 @@
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URL;
 
 public class W3cDom extends AbstractXMLUtils {
@@ -54,8 +54,7 @@ public class W3cDom extends AbstractXMLUtils {
      * @return A Jsoup Document.
      */
     public Document createW3cDocument(String content) throws IOException, SAXException {
-        InputStream is = new ByteArrayInputStream(content.getBytes());
-        Document document = getDocumentBuilder().parse(is);
+        Document document = getDocumentBuilder().parse(new InputSource(new StringReader(content)));
         return document;
     }
 
@@ -81,7 +80,7 @@ public class W3cDom extends AbstractXMLUtils {
      * @throws SAXException
      */
     public String evaluateXPath(Document document, String xpath) throws XPathExpressionException, IOException, SAXException {
-        XPathExpression xPathExpression = getXpathFactory().newXPath().compile(xpath);
+        XPathExpression xPathExpression = compileXPath(xpath);
         return xPathExpression.evaluate(document);
     }
 
@@ -96,7 +95,7 @@ public class W3cDom extends AbstractXMLUtils {
      * @throws SAXException
      */
     public NodeList evaluateXPathNodes(Document document, String xpath) throws XPathExpressionException, IOException, SAXException {
-        XPathExpression xPathExpression = getXpathFactory().newXPath().compile(xpath);
+        XPathExpression xPathExpression = compileXPath(xpath);
         return (NodeList) xPathExpression.evaluate(document, XPathConstants.NODESET);
     }
 